@@ -0,0 +1,129 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.SplittableRandom;
+
+/**
+ * @brief Times BarnesHutTree against going through every pair of people, and measures its error
+ *
+ * People are spread at random over a 1280x960 screen and pushed and
+ * pulled as PhysicsEngineOrderly does.  For each number of people, one
+ * frame of forces is timed both ways, the tree counting its build, and
+ * the forces from the tree are compared with the exact ones.
+ * <pre>
+ * java BarnesHutBench [theta [people...]]
+ * </pre>
+ * The defaults are theta 0.5 and 100, 1000 and 10000 people.
+ */
+public class BarnesHutBench
+{
+  private static final float WIDTH = 1280;
+  private static final float HEIGHT = 960;
+  private static final float DISTANCE = 200;
+  // How long to repeat each measure for
+  private static final long MEASURE_NANOS = 1000000000L;
+
+  private static abstract class Forces
+  {
+    abstract void frame(float[] outX, float[] outY);
+
+    /**
+     * @return the nanoseconds a frame takes, after one to warm up
+     */
+    long time(float[] outX, float[] outY)
+    {
+      frame(outX, outY);
+      int frames = 0;
+      long start = System.nanoTime();
+      long elapsed;
+      do {
+        frame(outX, outY);
+        frames++;
+        elapsed = System.nanoTime() - start;
+      } while (elapsed < MEASURE_NANOS);
+      return elapsed / frames;
+    }
+  }
+
+  static public void main(String args[])
+  {
+    final float theta = args.length > 0 ? Float.parseFloat(args[0]) : 0.5f;
+    int[] sizes = {100, 1000, 10000};
+    if (args.length > 1) {
+      sizes = new int[args.length - 1];
+      for (int i = 1; i < args.length; i++)
+        sizes[i - 1] = Integer.parseInt(args[i]);
+    }
+    System.out.println(String.format("%7s %12s %12s %10s", "people", "pairs", "tree " + theta, "rms error"));
+    for (final int people : sizes) {
+      final float[] xs = new float[people];
+      final float[] ys = new float[people];
+      SplittableRandom random = new SplittableRandom(people);
+      for (int i = 0; i < people; i++) {
+        xs[i] = (float) random.nextDouble() * WIDTH;
+        ys[i] = (float) random.nextDouble() * HEIGHT;
+      }
+
+      final float[] out = new float[2];
+      Forces pairs = new Forces() {
+        final ForceKernel kernel = new ForceKernel();
+        void frame(float[] outX, float[] outY) {
+          for (int i = 0; i < people; i++) {
+            kernel.displacement(xs, ys, people, i, xs[i], ys[i], DISTANCE * DISTANCE,
+                                PhysicsEngineOrderly.PERSON_PUSH, PhysicsEngineOrderly.PERSON_PULL, out);
+            outX[i] = out[0];
+            outY[i] = out[1];
+          }
+        }
+      };
+      Forces tree = new Forces() {
+        final BarnesHutTree tree = new BarnesHutTree();
+        void frame(float[] outX, float[] outY) {
+          tree.clear();
+          for (int i = 0; i < people; i++)
+            tree.add(i, xs[i], ys[i]);
+          tree.build();
+          for (int i = 0; i < people; i++) {
+            tree.displacement(i, xs[i], ys[i], theta, DISTANCE,
+                              PhysicsEngineOrderly.PERSON_PUSH, PhysicsEngineOrderly.PERSON_PULL, out);
+            outX[i] = out[0];
+            outY[i] = out[1];
+          }
+        }
+      };
+
+      float[] exactX = new float[people];
+      float[] exactY = new float[people];
+      float[] treeX = new float[people];
+      float[] treeY = new float[people];
+      long pairsNanos = pairs.time(exactX, exactY);
+      long treeNanos = tree.time(treeX, treeY);
+      double error = 0;
+      double magnitude = 0;
+      for (int i = 0; i < people; i++) {
+        double dx = treeX[i] - exactX[i];
+        double dy = treeY[i] - exactY[i];
+        error += dx * dx + dy * dy;
+        magnitude += (double) exactX[i] * exactX[i] + (double) exactY[i] * exactY[i];
+      }
+      System.out.println(String.format("%7d %9.3f ms %9.3f ms %9.2f%%", people, pairsNanos / 1e6, treeNanos / 1e6,
+                                       100 * Math.sqrt(error / magnitude)));
+    }
+  }
+}
@@ -0,0 +1,272 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+
+/**
+ * @brief Barnes-Hut quadtree of the people, for the forces between them
+ *
+ * The tree is rebuilt from the positions at the start of each frame.  A
+ * person is then pushed away from everyone nearer than a given distance and
+ * pulled towards everyone further away, always by the same amount, along
+ * the line between them.  A cell seen from far enough, under an angle below
+ * theta, stands for all the people in it, at their centre, as long as they
+ * are all near or all far.  Only the cells across that distance are
+ * opened down to single people, so a frame costs far less than O(P^2).
+ *
+ * Cells and bodies live in flat arrays reused from frame to frame.  The
+ * four children of a cell are consecutive; a leaf holds a list of bodies,
+ * of one body except at the deepest level, where people on top of each
+ * other end up together.
+ */
+public class BarnesHutTree
+{
+  private static final int MAX_DEPTH = 24;
+
+  // Bodies, with the next body in the same leaf
+  private int bodies;
+  private int[] bodyId = new int[0];
+  private float[] bodyX = new float[0];
+  private float[] bodyY = new float[0];
+  private int[] nextBody = new int[0];
+
+  // Square cells, by their lower corner and side
+  private int cells;
+  private float[] cellX = new float[0];
+  private float[] cellY = new float[0];
+  private float[] cellSize = new float[0];
+  // Sum of the positions and number of the bodies within
+  private double[] sumX = new double[0];
+  private double[] sumY = new double[0];
+  private int[] count = new int[0];
+  // Index of the first of the four children, -1 for a leaf
+  private int[] firstChild = new int[0];
+  // First body of a leaf, -1 for none
+  private int[] firstBody = new int[0];
+
+  // Cells left to look at, for each thread walking the tree: at most three
+  // siblings per level and four children
+  private static final ThreadLocal<int[]> STACKS = new ThreadLocal<int[]>() {
+    protected int[] initialValue() {
+      return new int[4 * (MAX_DEPTH + 1)];
+    }
+  };
+
+  /**
+   * Empties the tree for the next frame.
+   */
+  public void clear()
+  {
+    bodies = 0;
+    cells = 0;
+  }
+
+  /**
+   * Adds a body, to be put in the tree by build().
+   */
+  public void add(int id, float x, float y)
+  {
+    if (bodies == bodyId.length) {
+      int capacity = Math.max(64, bodies * 2);
+      bodyId = Arrays.copyOf(bodyId, capacity);
+      bodyX = Arrays.copyOf(bodyX, capacity);
+      bodyY = Arrays.copyOf(bodyY, capacity);
+      nextBody = Arrays.copyOf(nextBody, capacity);
+    }
+    bodyId[bodies] = id;
+    bodyX[bodies] = x;
+    bodyY[bodies] = y;
+    bodies++;
+  }
+
+  /**
+   * Builds the tree over the bodies added since clear().
+   */
+  public void build()
+  {
+    float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+    float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+    for (int b = 0; b < bodies; b++) {
+      minX = Math.min(minX, bodyX[b]);
+      minY = Math.min(minY, bodyY[b]);
+      maxX = Math.max(maxX, bodyX[b]);
+      maxY = Math.max(maxY, bodyY[b]);
+    }
+    // A little wider, so the furthest bodies fall inside
+    float size = Math.max(1, Math.max(maxX - minX, maxY - minY)) * 1.0001f;
+    cells = 0;
+    newCell(minX, minY, size);
+    for (int b = 0; b < bodies; b++)
+      insert(b);
+  }
+
+  private int newCell(float x, float y, float size)
+  {
+    if (cells == cellX.length) {
+      int capacity = Math.max(256, cells * 2);
+      cellX = Arrays.copyOf(cellX, capacity);
+      cellY = Arrays.copyOf(cellY, capacity);
+      cellSize = Arrays.copyOf(cellSize, capacity);
+      sumX = Arrays.copyOf(sumX, capacity);
+      sumY = Arrays.copyOf(sumY, capacity);
+      count = Arrays.copyOf(count, capacity);
+      firstChild = Arrays.copyOf(firstChild, capacity);
+      firstBody = Arrays.copyOf(firstBody, capacity);
+    }
+    cellX[cells] = x;
+    cellY[cells] = y;
+    cellSize[cells] = size;
+    sumX[cells] = 0;
+    sumY[cells] = 0;
+    count[cells] = 0;
+    firstChild[cells] = -1;
+    firstBody[cells] = -1;
+    return cells++;
+  }
+
+  private int child(int c, float x, float y)
+  {
+    float half = cellSize[c] / 2;
+    return firstChild[c] + (x >= cellX[c] + half ? 1 : 0) + (y >= cellY[c] + half ? 2 : 0);
+  }
+
+  private void insert(int b)
+  {
+    float x = bodyX[b];
+    float y = bodyY[b];
+    int c = 0;
+    for (int depth = 0; ; depth++) {
+      count[c]++;
+      sumX[c] += x;
+      sumY[c] += y;
+      if (firstChild[c] < 0) {
+        if (firstBody[c] < 0 || depth == MAX_DEPTH) {
+          nextBody[b] = firstBody[c];
+          firstBody[c] = b;
+          return;
+        }
+        // Split the leaf, moving its body down a level
+        float half = cellSize[c] / 2;
+        int first = newCell(cellX[c], cellY[c], half);
+        newCell(cellX[c] + half, cellY[c], half);
+        newCell(cellX[c], cellY[c] + half, half);
+        newCell(cellX[c] + half, cellY[c] + half, half);
+        firstChild[c] = first;
+        int moved = firstBody[c];
+        firstBody[c] = -1;
+        int to = child(c, bodyX[moved], bodyY[moved]);
+        count[to] = 1;
+        sumX[to] = bodyX[moved];
+        sumY[to] = bodyY[moved];
+        firstBody[to] = moved;
+        nextBody[moved] = -1;
+      }
+      c = child(c, x, y);
+    }
+  }
+
+  /**
+   * Adds up the moves of a body at (x, y): by push away from every other
+   * body nearer than distance, and by pull towards every body further away.
+   * Several threads may call it at once.
+   * @param id the body's id, which is left out
+   * @param theta opening angle, as cell side over distance to its centre
+   * @param out receives the x and y of the total move
+   */
+  public void displacement(int id, float x, float y, float theta,
+                           float distance, float push, float pull, float[] out)
+  {
+    float near = distance * distance;
+    float theta2 = theta * theta;
+    float dx, dy, d2, scale;
+    float moveX = 0;
+    float moveY = 0;
+    int[] stack = STACKS.get();
+    int top = 0;
+    if (bodies > 0)
+      stack[top++] = 0;
+    while (top > 0) {
+      int c = stack[--top];
+      if (count[c] == 0)
+        continue;
+      if (firstChild[c] < 0) {
+        for (int b = firstBody[c]; b >= 0; b = nextBody[b]) {
+          if (bodyId[b] == id)
+            continue;
+          dx = x - bodyX[b];
+          dy = y - bodyY[b];
+          d2 = dx * dx + dy * dy;
+          if (d2 == 0)
+            continue;
+          scale = (d2 < near ? push : -pull) / (float) Math.sqrt(d2);
+          moveX += dx * scale;
+          moveY += dy * scale;
+        }
+        continue;
+      }
+      float size = cellSize[c];
+      dx = x - (float) (sumX[c] / count[c]);
+      dy = y - (float) (sumY[c] / count[c]);
+      d2 = dx * dx + dy * dy;
+      if (size * size < theta2 * d2 && !contains(c, x, y)) {
+        int side = side(c, x, y, near);
+        if (side != 0) {
+          scale = count[c] * (side < 0 ? push : -pull) / (float) Math.sqrt(d2);
+          moveX += dx * scale;
+          moveY += dy * scale;
+          continue;
+        }
+      }
+      int first = firstChild[c];
+      stack[top++] = first;
+      stack[top++] = first + 1;
+      stack[top++] = first + 2;
+      stack[top++] = first + 3;
+    }
+    out[0] = moveX;
+    out[1] = moveY;
+  }
+
+  private boolean contains(int c, float x, float y)
+  {
+    return x >= cellX[c] && x < cellX[c] + cellSize[c]
+        && y >= cellY[c] && y < cellY[c] + cellSize[c];
+  }
+
+  /**
+   * @return -1 if all of a cell is nearer to (x, y) than sqrt(near), 1 if
+   *         all of it is further, 0 if it straddles the distance
+   */
+  private int side(int c, float x, float y, float near)
+  {
+    float x0 = cellX[c] - x;
+    float y0 = cellY[c] - y;
+    float x1 = x0 + cellSize[c];
+    float y1 = y0 + cellSize[c];
+    float closeX = x0 > 0 ? x0 : (x1 < 0 ? -x1 : 0);
+    float closeY = y0 > 0 ? y0 : (y1 < 0 ? -y1 : 0);
+    if (closeX * closeX + closeY * closeY >= near)
+      return 1;
+    float farX = Math.max(Math.abs(x0), Math.abs(x1));
+    float farY = Math.max(Math.abs(y0), Math.abs(y1));
+    if (farX * farX + farY * farY < near)
+      return -1;
+    return 0;
+  }
+}
@@ -19,6 +19,8 @@
 
 import java.awt.Color;
 import java.io.*;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
@@ -102,6 +104,36 @@ public class CodeSwarmConfig {
   /** Controls where the config files are for the Physical Engine */
   public static final String PHYSICS_ENGINE_CONF_DIR = "PhysicsEngineConfigDir";
   public static final String IS_INPUT_SORTED_KEY = "IsInputSorted";
+  /** Number of events sorted in memory at once when the input isn't sorted */
+  public static final String SORT_RUN_SIZE_KEY = "SortRunSize";
+  /** Number of threads parsing xml input in parallel */
+  public static final String PARSE_THREADS_KEY = "ParseThreads";
+  /** Number of threads relaxing and updating files and people */
+  public static final String PHYSICS_THREADS_KEY = "PhysicsThreads";
+  /** Speed, in pixels per frame, below which a node starts to settle */
+  public static final String SLEEP_SPEED_KEY = "SleepSpeed";
+  /** Frames a node stays below the sleep speed before it sleeps */
+  public static final String SLEEP_FRAMES_KEY = "SleepFrames";
+  /** Boolean value, keeps reading the input file as it is appended to */
+  public static final String FOLLOW_INPUT_KEY = "FollowInput";
+  /** Longest time between checks for appended input in follow mode */
+  public static final String FOLLOW_POLL_MILLIS_KEY = "FollowPollMillis";
+  /** Date value, events before it are not shown */
+  public static final String START_DATE_KEY = "StartDate";
+  /** Date value, events from it on are not shown */
+  public static final String END_DATE_KEY = "EndDate";
+  /** Length in days of the time buckets in the index of an event file */
+  public static final String INDEX_BUCKET_DAYS_KEY = "IndexBucketDays";
+  /** Days a dead file or person stays in memory before it is evicted, negative for never */
+  public static final String EVICT_AFTER_DAYS_KEY = "EvictAfterDays";
+  /** Long value, seeds every random choice so that a run can be repeated frame for frame */
+  public static final String RANDOM_SEED_KEY = "RandomSeed";
+  /** Days of simulated history between checkpoints, 0 for none */
+  public static final String CHECKPOINT_DAYS_KEY = "CheckpointDays";
+  /** Directory the checkpoints are written to and resumed from */
+  public static final String CHECKPOINT_DIR_KEY = "CheckpointDirectory";
+  /** Date value, resumes from the latest checkpoint before it */
+  public static final String RESUME_DATE_KEY = "ResumeDate";
   public static final String SHOW_USER_NAME_KEY = "ShowUserName";
   /** Default regex and rgb values used to match anything not caught in the config file */
   public static String DEFAULT_COLOR_ASSIGN = "\"Misc\",\".*\",128,128,128,128,128,128";
@@ -264,4 +296,21 @@ public class CodeSwarmConfig {
   public double getDoubleProperty(String key) {
     return Double.parseDouble(getStringProperty(key));
   }
+
+  /**
+   *
+   * @param key
+   * @param unset
+   * @return the date (yyyy-MM-dd, local time) in milliseconds since the epoch, unset if the value is empty.
+   */
+  public long getDateProperty(String key, long unset) {
+    String value = getStringProperty(key);
+    if (value == null || value.trim().length() == 0)
+      return unset;
+    try {
+      return new SimpleDateFormat("yyyy-MM-dd").parse(value.trim()).getTime();
+    } catch (ParseException e) {
+      throw new RuntimeException(key + " must be a date like 2015-01-31, found " + value);
+    }
+  }
 }
@@ -26,10 +26,18 @@ class ColorAssigner
 	ArrayList<ColorTest> tests;
 	//int defaultColor = PApplet.color(128, 128, 128);
 	int defaultColor = Color.gray.getRGB();
+	// Picks the shade within a rule's range
+	SplittableRandom random;
 
 	public ColorAssigner()
+	{
+		this( new SplittableRandom() );
+	}
+
+	public ColorAssigner( SplittableRandom random )
 	{
 		tests = new ArrayList<ColorTest>();
+		this.random = random;
 	}
 
 	public void addRule( String label, String expr, int c1, int c2 )
@@ -52,10 +60,24 @@ class ColorAssigner
 		for (ColorTest t : tests)
 		{
 			if (t.passes(s))
-				return t.assign();
+				return t.assign( random );
 		}
 
 		return defaultColor;
 	}
+
+	/**
+	 * Blends two ARGB colors channel by channel, as Processing's
+	 * lerpColor() does in RGB mode, without needing a PApplet.
+	 */
+	public static int lerpColor( int c1, int c2, float amt )
+	{
+		float a1 = (c1 >> 24) & 0xff, r1 = (c1 >> 16) & 0xff, g1 = (c1 >> 8) & 0xff, b1 = c1 & 0xff;
+		float a2 = (c2 >> 24) & 0xff, r2 = (c2 >> 16) & 0xff, g2 = (c2 >> 8) & 0xff, b2 = c2 & 0xff;
+		return ((int)(a1 + (a2 - a1) * amt) << 24) |
+		       ((int)(r1 + (r2 - r1) * amt) << 16) |
+		       ((int)(g1 + (g2 - g1) * amt) << 8) |
+		       ((int)(b1 + (b2 - b1) * amt));
+	}
 }
 
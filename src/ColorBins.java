@@ -17,7 +17,7 @@
  * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-import processing.core.PApplet;
+import java.util.Arrays;
 
 /**
  * @brief Definition of the colored histogram elements
@@ -36,7 +36,7 @@ class ColorBins
   public void add( int c )
   {
     if ( num >= colorList.length )
-      colorList = PApplet.expand( colorList );
+      colorList = Arrays.copyOf( colorList, colorList.length * 2 );
 
     colorList[num] = c;
     num++;
@@ -44,7 +44,7 @@ class ColorBins
 
   public void sort()
   {
-    colorList = PApplet.sort( colorList );
+    Arrays.sort( colorList );
   }
 }
 
@@ -18,9 +18,8 @@
  */
 
 import java.awt.Color;
+import java.util.SplittableRandom;
 import java.util.regex.*;
-import processing.core.PApplet;
-import processing.core.PConstants;
 
 class ColorTest
 {
@@ -34,9 +33,9 @@ class ColorTest
 		return m.matches();
 	}
 
-	public int assign()
+	public int assign( SplittableRandom random )
 	{
-		return PApplet.lerpColor( c1, c2, (float)Math.random(), PConstants.RGB );
+		return ColorAssigner.lerpColor( c1, c2, (float)random.nextDouble() );
 	}
 
 	public void loadProperty( String value )
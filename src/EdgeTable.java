@@ -0,0 +1,179 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @brief Open-addressing hash table of the edges between files and people
+ *
+ * Edges are keyed by the packed long (fileId << 32 | personId) and kept in
+ * two parallel arrays, keys and edges, probed linearly.  Looking an edge
+ * up allocates nothing, and each entry costs a long and a reference
+ * instead of a map entry, a Pair and its boxed hash.
+ */
+public class EdgeTable
+{
+  private static final int MIN_CAPACITY = 1024;
+
+  private long[] keys;
+  private SwarmEngine.Edge[] edges;
+  private int mask;
+  private int shift;
+  private int size;
+
+  public EdgeTable()
+  {
+    allocate(MIN_CAPACITY);
+  }
+
+  private void allocate(int capacity)
+  {
+    keys = new long[capacity];
+    edges = new SwarmEngine.Edge[capacity];
+    mask = capacity - 1;
+    shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    size = 0;
+  }
+
+  private static long key(int fileId, int personId)
+  {
+    return ((long) fileId << 32) | (personId & 0xFFFFFFFFL);
+  }
+
+  private int home(long key)
+  {
+    // Fibonacci hashing spreads the packed ids over the whole table
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+  }
+
+  /**
+   * @return the edge between a file and a person, or null if there is none
+   */
+  public SwarmEngine.Edge get(int fileId, int personId)
+  {
+    long k = key(fileId, personId);
+    for (int i = home(k); edges[i] != null; i = (i + 1) & mask)
+      if (keys[i] == k)
+        return edges[i];
+    return null;
+  }
+
+  /**
+   * Adds or replaces the edge between a file and a person.
+   */
+  public void put(int fileId, int personId, SwarmEngine.Edge edge)
+  {
+    if ((size + 1) * 4 > edges.length * 3)
+      rebuild(edges.length * 2);
+    long k = key(fileId, personId);
+    int i = home(k);
+    for (; edges[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == k) {
+        edges[i] = edge;
+        return;
+      }
+    }
+    keys[i] = k;
+    edges[i] = edge;
+    size++;
+  }
+
+  /**
+   * Removes the edge between a file and a person.
+   * @return the removed edge, or null if there was none
+   */
+  public SwarmEngine.Edge remove(int fileId, int personId)
+  {
+    long k = key(fileId, personId);
+    for (int i = home(k); edges[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == k) {
+        SwarmEngine.Edge removed = edges[i];
+        deleteSlot(i);
+        return removed;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Empties a slot, moving later entries of its probe run back so that
+   * no tombstones are needed.
+   */
+  private void deleteSlot(int hole)
+  {
+    size--;
+    int i = hole;
+    while (true) {
+      i = (i + 1) & mask;
+      if (edges[i] == null)
+        break;
+      int h = home(keys[i]);
+      // Move the entry unless its home lies cyclically in (hole, i]
+      if (((i - h) & mask) >= ((i - hole) & mask)) {
+        keys[hole] = keys[i];
+        edges[hole] = edges[i];
+        hole = i;
+      }
+    }
+    edges[hole] = null;
+  }
+
+  /**
+   * @return the number of edges in the table
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Reinserts every edge into fresh arrays of the given capacity.
+   */
+  private void rebuild(int capacity)
+  {
+    long[] oldKeys = keys;
+    SwarmEngine.Edge[] oldEdges = edges;
+    allocate(capacity);
+    for (int j = 0; j < oldEdges.length; j++) {
+      SwarmEngine.Edge edge = oldEdges[j];
+      if (edge == null)
+        continue;
+      int i = home(oldKeys[j]);
+      while (edges[i] != null)
+        i = (i + 1) & mask;
+      keys[i] = oldKeys[j];
+      edges[i] = edge;
+      size++;
+    }
+  }
+
+  /**
+   * @return every edge in the table, in no particular order
+   */
+  public List<SwarmEngine.Edge> values()
+  {
+    SwarmEngine.Edge[] all = new SwarmEngine.Edge[size];
+    int n = 0;
+    for (SwarmEngine.Edge edge : edges)
+      if (edge != null)
+        all[n++] = edge;
+    return Arrays.asList(all);
+  }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import org.codeswarm.dependencies.sun.tools.javac.util.Pair;
+
+/**
+ * @brief Compares EdgeTable with the HashMap keyed by Pair of nodes it replaced
+ *
+ * Puts the same edges in both, between files and people of a SwarmEngine
+ * made from the default config, then times random lookups of them and
+ * the removal of half of them, and weighs what each structure holds on
+ * to beyond the edges themselves.
+ * <pre>
+ * java EdgeTableBench [edges [lookups]]
+ * </pre>
+ * The defaults are a million edges and ten million lookups.
+ */
+public class EdgeTableBench
+{
+  private static final int PEOPLE = 1000;
+  private static final int EDGES_PER_FILE = 10;
+
+  /**
+   * @return bytes of heap in use, after collecting the garbage
+   */
+  private static long usedHeap()
+  {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++)
+      System.gc();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * @return the person the j-th edge of a file goes to, different for each j
+   */
+  private static int person(int file, int j)
+  {
+    return (7 * file + 97 * j) % PEOPLE;
+  }
+
+  static public void main(String args[])
+  {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 10000000;
+    int fileCount = (count + EDGES_PER_FILE - 1) / EDGES_PER_FILE;
+    count = fileCount * EDGES_PER_FILE;
+    SwarmEngine swarm = null;
+    try {
+      swarm = new SwarmEngine(new CodeSwarmConfig(Arrays.asList(new String[]{"defaults/code_swarm.config",
+                                                                            "defaults/user.config"})));
+    } catch (IOException e) {
+      System.err.println("Failed due to exception: " + e.getMessage());
+      System.exit(2);
+    }
+    SwarmEngine.FileNode[] files = new SwarmEngine.FileNode[fileCount];
+    for (int f = 0; f < fileCount; f++)
+      files[f] = swarm.new FileNode();
+    SwarmEngine.PersonNode[] people = new SwarmEngine.PersonNode[PEOPLE];
+    for (int p = 0; p < PEOPLE; p++)
+      people[p] = swarm.new PersonNode();
+    SwarmEngine.Edge[] edges = new SwarmEngine.Edge[count];
+    for (int e = 0; e < count; e++)
+      edges[e] = swarm.new Edge();
+
+    // The edges to look up, drawn beforehand so both pay the same
+    int[] wanted = new int[Math.min(lookups, 1 << 20)];
+    SplittableRandom random = new SplittableRandom(11);
+    for (int i = 0; i < wanted.length; i++)
+      wanted[i] = random.nextInt(count);
+
+    long before = usedHeap();
+    Map<Pair<SwarmEngine.FileNode, SwarmEngine.PersonNode>, SwarmEngine.Edge> map =
+      new HashMap<Pair<SwarmEngine.FileNode, SwarmEngine.PersonNode>, SwarmEngine.Edge>();
+    for (int e = 0; e < count; e++) {
+      int f = e / EDGES_PER_FILE;
+      map.put(new Pair<SwarmEngine.FileNode, SwarmEngine.PersonNode>(files[f], people[person(f, e % EDGES_PER_FILE)]), edges[e]);
+    }
+    long mapBytes = usedHeap() - before;
+
+    before = usedHeap();
+    EdgeTable table = new EdgeTable();
+    for (int e = 0; e < count; e++) {
+      int f = e / EDGES_PER_FILE;
+      table.put(f, person(f, e % EDGES_PER_FILE), edges[e]);
+    }
+    long tableBytes = usedHeap() - before;
+
+    System.out.println(count + " edges, " + lookups + " lookups");
+    for (int round = 0; round < 2; round++) {
+      // The first round warms up
+      long start = System.nanoTime();
+      int found = 0;
+      for (int i = 0; i < lookups; i++) {
+        int e = wanted[i % wanted.length];
+        int f = e / EDGES_PER_FILE;
+        if (map.get(new Pair<SwarmEngine.FileNode, SwarmEngine.PersonNode>(files[f], people[person(f, e % EDGES_PER_FILE)])) != null)
+          found++;
+      }
+      long mapNanos = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < lookups; i++) {
+        int e = wanted[i % wanted.length];
+        int f = e / EDGES_PER_FILE;
+        if (table.get(f, person(f, e % EDGES_PER_FILE)) != null)
+          found++;
+      }
+      long tableNanos = System.nanoTime() - start;
+      if (round == 1) {
+        System.out.println(String.format("HashMap<Pair>: %6.1f ns/get, %5.1f bytes/edge", (double) mapNanos / lookups,
+                                         (double) mapBytes / count));
+        System.out.println(String.format("EdgeTable:     %6.1f ns/get, %5.1f bytes/edge", (double) tableNanos / lookups,
+                                         (double) tableBytes / count));
+      }
+      if (found != 2 * lookups)
+        throw new IllegalStateException("Lost edges: found " + found + " of " + 2 * lookups);
+    }
+
+    // Half the edges die, as the per-frame sweep would find them
+    long start = System.nanoTime();
+    for (int e = 0; e < count; e += 2) {
+      int f = e / EDGES_PER_FILE;
+      map.remove(new Pair<SwarmEngine.FileNode, SwarmEngine.PersonNode>(files[f], people[person(f, e % EDGES_PER_FILE)]));
+    }
+    long mapNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    for (int e = 0; e < count; e += 2) {
+      int f = e / EDGES_PER_FILE;
+      table.remove(f, person(f, e % EDGES_PER_FILE));
+    }
+    long tableNanos = System.nanoTime() - start;
+    if (map.size() != table.size())
+      throw new IllegalStateException("HashMap kept " + map.size() + " edges, EdgeTable " + table.size());
+    System.out.println(String.format("Removing half: HashMap<Pair> %.1f ns/edge, EdgeTable %.1f ns/edge",
+                                     2.0 * mapNanos / count, 2.0 * tableNanos / count));
+    System.exit(0);
+  }
+}
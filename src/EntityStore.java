@@ -0,0 +1,233 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * @brief Positions, friction, mass and life of nodes in parallel primitive arrays
+ *
+ * Slots are indexed by node id, so a FileNode or PersonNode is only a view
+ * holding its id.  Moving nodes around touches a few contiguous float arrays
+ * and allocates nothing.  Life is kept as the decay step a node was last
+ * freshened at, from which SwarmEngine.Drawable.life() is computed.  How
+ * long a node has been nearly still tells whether it sleeps.  A slot
+ * outlives an evicted node, which comes back where it was.
+ */
+public class EntityStore
+{
+  private float[] x = new float[0];
+  private float[] y = new float[0];
+  private float[] lastX = new float[0];
+  private float[] lastY = new float[0];
+  private float[] friction = new float[0];
+  private float[] mass = new float[0];
+  private int[] freshenedAt = new int[0];
+  // Frames in a row the node moved slower than the sleep speed
+  private int[] still = new int[0];
+
+  /**
+   * Makes room for a slot for id.
+   */
+  public void ensure(int id)
+  {
+    if (id < x.length)
+      return;
+    int capacity = Math.max(id + 1, Math.max(64, x.length * 2));
+    x = Arrays.copyOf(x, capacity);
+    y = Arrays.copyOf(y, capacity);
+    lastX = Arrays.copyOf(lastX, capacity);
+    lastY = Arrays.copyOf(lastY, capacity);
+    friction = Arrays.copyOf(friction, capacity);
+    mass = Arrays.copyOf(mass, capacity);
+    freshenedAt = Arrays.copyOf(freshenedAt, capacity);
+    still = Arrays.copyOf(still, capacity);
+  }
+
+  public float x(int id)
+  {
+    return x[id];
+  }
+
+  public float y(int id)
+  {
+    return y[id];
+  }
+
+  public float lastX(int id)
+  {
+    return lastX[id];
+  }
+
+  public float lastY(int id)
+  {
+    return lastY[id];
+  }
+
+  public float friction(int id)
+  {
+    return friction[id];
+  }
+
+  public float mass(int id)
+  {
+    return mass[id];
+  }
+
+  public int freshenedAt(int id)
+  {
+    return freshenedAt[id];
+  }
+
+  public int still(int id)
+  {
+    return still[id];
+  }
+
+  /**
+   * Sets the position and the position in the previous frame.
+   */
+  public void place(int id, float x, float y, float lastX, float lastY)
+  {
+    this.x[id] = x;
+    this.y[id] = y;
+    this.lastX[id] = lastX;
+    this.lastY[id] = lastY;
+  }
+
+  /**
+   * Sets the position, leaving the previous one alone.
+   */
+  public void moveTo(int id, float x, float y)
+  {
+    this.x[id] = x;
+    this.y[id] = y;
+  }
+
+  /**
+   * Moves by (dx, dy), leaving the previous position alone.
+   */
+  public void moveBy(int id, float dx, float dy)
+  {
+    x[id] += dx;
+    y[id] += dy;
+  }
+
+  /**
+   * Verlet step: moves on by the displacement since the previous frame,
+   * slowed down by friction, and remembers where it was.
+   */
+  public void integrate(int id)
+  {
+    float px = x[id];
+    float py = y[id];
+    x[id] = px + (px - lastX[id]) * friction[id];
+    y[id] = py + (py - lastY[id]) * friction[id];
+    lastX[id] = px;
+    lastY[id] = py;
+  }
+
+  /**
+   * Verlet step of the slots ids[0] to ids[count - 1], through kernel.
+   */
+  public void integrate(int[] ids, int count, ForceKernel kernel)
+  {
+    kernel.integrate(x, y, lastX, lastY, friction, ids, count);
+  }
+
+  public void setFriction(int id, float friction)
+  {
+    this.friction[id] = friction;
+  }
+
+  public void setMass(int id, float mass)
+  {
+    this.mass[id] = mass;
+  }
+
+  public void setFreshenedAt(int id, int step)
+  {
+    freshenedAt[id] = step;
+  }
+
+  public void setStill(int id, int frames)
+  {
+    still[id] = frames;
+  }
+
+  /**
+   * @return the square of the distance moved since the previous frame
+   */
+  public float speed2(int id)
+  {
+    float dx = x[id] - lastX[id];
+    float dy = y[id] - lastY[id];
+    return dx * dx + dy * dy;
+  }
+
+  /**
+   * Stops the node where it is, as if it had been there the frame before.
+   */
+  public void stop(int id)
+  {
+    lastX[id] = x[id];
+    lastY[id] = y[id];
+  }
+
+  /**
+   * Writes the slots of ids below count, for read() to restore.
+   */
+  public void write(DataOutput out, int count) throws IOException
+  {
+    int slots = Math.min(count, x.length);
+    out.writeInt(slots);
+    for (int i = 0; i < slots; i++) {
+      out.writeFloat(x[i]);
+      out.writeFloat(y[i]);
+      out.writeFloat(lastX[i]);
+      out.writeFloat(lastY[i]);
+      out.writeFloat(friction[i]);
+      out.writeFloat(mass[i]);
+      out.writeInt(freshenedAt[i]);
+      out.writeInt(still[i]);
+    }
+  }
+
+  /**
+   * Reads back the slots written by write().
+   */
+  public void read(DataInput in) throws IOException
+  {
+    int slots = in.readInt();
+    if (slots > 0)
+      ensure(slots - 1);
+    for (int i = 0; i < slots; i++) {
+      x[i] = in.readFloat();
+      y[i] = in.readFloat();
+      lastX[i] = in.readFloat();
+      lastY[i] = in.readFloat();
+      friction[i] = in.readFloat();
+      mass[i] = in.readFloat();
+      freshenedAt[i] = in.readInt();
+      still[i] = in.readInt();
+    }
+  }
+}
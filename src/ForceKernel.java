@@ -0,0 +1,93 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * @brief Loops of PhysicsEngineOrderlyVector over flat arrays, one element at a time
+ *
+ * This is the fallback used when the JDK's Vector API is not there, and
+ * the reference VectorForceKernel is checked against: both do the same
+ * float operations, the other several lanes at a time.
+ */
+public class ForceKernel
+{
+  /**
+   * Picks the Vector API kernel when the jdk.incubator.vector module is
+   * there (java --add-modules jdk.incubator.vector), else this one.
+   * @param vector false to use this one anyway
+   */
+  public static ForceKernel create(boolean vector)
+  {
+    if (vector) {
+      try {
+        return (ForceKernel) Class.forName("VectorForceKernel").getDeclaredConstructor().newInstance();
+      } catch (Exception e) {
+        // Reflection failed, fall through
+      } catch (LinkageError e) {
+        // No jdk.incubator.vector module, fall through
+      }
+    }
+    return new ForceKernel();
+  }
+
+  /**
+   * Adds up the moves of a point at (x, y) from the points 0 to count of xs
+   * and ys, but the one at self: by push away from each one nearer than
+   * sqrt(near), by pull towards each one further.  Points right on top of
+   * it are left out.
+   * @param out receives the x and y of the total move
+   */
+  public void displacement(float[] xs, float[] ys, int count, int self,
+                           float x, float y, float near, float push, float pull, float[] out)
+  {
+    float moveX = 0;
+    float moveY = 0;
+    for (int j = 0; j < count; j++) {
+      if (j == self)
+        continue;
+      float dx = x - xs[j];
+      float dy = y - ys[j];
+      float d2 = dx * dx + dy * dy;
+      if (d2 == 0)
+        continue;
+      float scale = (d2 < near ? push : -pull) / (float) Math.sqrt(d2);
+      moveX += dx * scale;
+      moveY += dy * scale;
+    }
+    out[0] = moveX;
+    out[1] = moveY;
+  }
+
+  /**
+   * Verlet step of the slots ids[0] to ids[count - 1], as in
+   * EntityStore.integrate().
+   */
+  public void integrate(float[] x, float[] y, float[] lastX, float[] lastY,
+                        float[] friction, int[] ids, int count)
+  {
+    for (int i = 0; i < count; i++) {
+      int id = ids[i];
+      float px = x[id];
+      float py = y[id];
+      x[id] = px + (px - lastX[id]) * friction[id];
+      y[id] = py + (py - lastY[id]) * friction[id];
+      lastX[id] = px;
+      lastY[id] = py;
+    }
+  }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * @brief Receives each frame a SwarmEngine simulates
+ *
+ * Sinks are called on the simulation thread right after the frame is
+ * simulated, before the next one starts, so they may read the engine's
+ * state but should copy out what they keep.
+ */
+public interface FrameSink
+{
+  /**
+   * Called once per simulated frame.
+   * @param engine the engine, holding the frame just simulated
+   * @throws InterruptedException if the simulation should stop
+   */
+  void onFrame(SwarmEngine engine) throws InterruptedException;
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @brief What draw() needs of one simulated frame, copied out of the simulation
+ *
+ * SwarmEngine fills a snapshot at the end of each frame on the simulation
+ * thread, and code_swarm hands it to the animation thread, which draws from it alone while the next
+ * frame is simulated.  Two snapshots are passed back and forth, so the
+ * arrays are grown once and then reused.
+ */
+public class FrameSnapshot
+{
+  // Frame-wide state
+  long date;
+  int maxTouches;
+  int nodeCount;
+  int peopleCount;
+  int evictedNodes;
+  int evictedPeople;
+  int asleepNodes;
+  int asleepPeople;
+  long updateDuration;
+  long newestAppendTime;
+  // Whether this is the last frame of the input
+  boolean last;
+  final List<ColorBins> history = new ArrayList<ColorBins>();
+
+  // Living files
+  int files;
+  float[] fileX = new float[0];
+  float[] fileY = new float[0];
+  float[] fileLastX = new float[0];
+  float[] fileLastY = new float[0];
+  int[] fileLife = new int[0];
+  int[] fileHue = new int[0];
+  int[] fileTouches = new int[0];
+
+  // Living people
+  int people;
+  float[] personX = new float[0];
+  float[] personY = new float[0];
+  int[] personLife = new int[0];
+  int[] personFlavor = new int[0];
+  String[] personName = new String[0];
+  int[] personId = new int[0];
+
+  // Edges, only taken when they are shown
+  int edges;
+  float[] edgeFromX = new float[0];
+  float[] edgeFromY = new float[0];
+  float[] edgeToX = new float[0];
+  float[] edgeToY = new float[0];
+  int[] edgeLife = new int[0];
+
+  // The most touched files, only taken when they are shown
+  int popular;
+  final String[] popularName = new String[10];
+  final int[] popularTouches = new int[10];
+
+  /**
+   * Empties the snapshot for the next frame, keeping its arrays.
+   */
+  public void clear()
+  {
+    files = 0;
+    Arrays.fill(personName, 0, people, null);
+    people = 0;
+    edges = 0;
+    popular = 0;
+    history.clear();
+    last = false;
+  }
+
+  public void addFile(float x, float y, float lastX, float lastY, int life, int hue, int touches)
+  {
+    if (files == fileX.length) {
+      int capacity = Math.max(64, files * 2);
+      fileX = Arrays.copyOf(fileX, capacity);
+      fileY = Arrays.copyOf(fileY, capacity);
+      fileLastX = Arrays.copyOf(fileLastX, capacity);
+      fileLastY = Arrays.copyOf(fileLastY, capacity);
+      fileLife = Arrays.copyOf(fileLife, capacity);
+      fileHue = Arrays.copyOf(fileHue, capacity);
+      fileTouches = Arrays.copyOf(fileTouches, capacity);
+    }
+    fileX[files] = x;
+    fileY[files] = y;
+    fileLastX[files] = lastX;
+    fileLastY[files] = lastY;
+    fileLife[files] = life;
+    fileHue[files] = hue;
+    fileTouches[files] = touches;
+    files++;
+  }
+
+  public void addPerson(float x, float y, int life, int flavor, String name, int id)
+  {
+    if (people == personX.length) {
+      int capacity = Math.max(16, people * 2);
+      personX = Arrays.copyOf(personX, capacity);
+      personY = Arrays.copyOf(personY, capacity);
+      personLife = Arrays.copyOf(personLife, capacity);
+      personFlavor = Arrays.copyOf(personFlavor, capacity);
+      personName = Arrays.copyOf(personName, capacity);
+      personId = Arrays.copyOf(personId, capacity);
+    }
+    personX[people] = x;
+    personY[people] = y;
+    personLife[people] = life;
+    personFlavor[people] = flavor;
+    personName[people] = name;
+    personId[people] = id;
+    people++;
+  }
+
+  public void addEdge(float fromX, float fromY, float toX, float toY, int life)
+  {
+    if (edges == edgeLife.length) {
+      int capacity = Math.max(64, edges * 2);
+      edgeFromX = Arrays.copyOf(edgeFromX, capacity);
+      edgeFromY = Arrays.copyOf(edgeFromY, capacity);
+      edgeToX = Arrays.copyOf(edgeToX, capacity);
+      edgeToY = Arrays.copyOf(edgeToY, capacity);
+      edgeLife = Arrays.copyOf(edgeLife, capacity);
+    }
+    edgeFromX[edges] = fromX;
+    edgeFromY[edges] = fromY;
+    edgeToX[edges] = toX;
+    edgeToY[edges] = toY;
+    edgeLife[edges] = life;
+    edges++;
+  }
+
+  /**
+   * Adds the next most touched file to the popular list.
+   */
+  public void addPopular(String name, int touches)
+  {
+    popularName[popular] = name;
+    popularTouches[popular] = touches;
+    popular++;
+  }
+}
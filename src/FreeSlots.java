@@ -0,0 +1,92 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+
+/**
+ * @brief The holes of a list, handed out lowest first
+ *
+ * A person's files keep their places in its rings, so a file that leaves
+ * leaves a hole, and the next file to come takes the lowest one.  The holes
+ * are kept in a binary min-heap: freeing and taking one cost O(log holes)
+ * instead of the O(n) search for a null in the list.
+ */
+public class FreeSlots
+{
+  private int[] heap = new int[8];
+  private int size;
+
+  /**
+   * Forgets every hole.
+   */
+  public void clear()
+  {
+    size = 0;
+  }
+
+  /**
+   * @return true if there is no hole
+   */
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * Adds a hole at slot.
+   */
+  public void free(int slot)
+  {
+    if (size == heap.length)
+      heap = Arrays.copyOf(heap, size * 2);
+    int i = size++;
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (heap[parent] <= slot)
+        break;
+      heap[i] = heap[parent];
+      i = parent;
+    }
+    heap[i] = slot;
+  }
+
+  /**
+   * Fills the lowest hole.
+   * @return its slot
+   */
+  public int take()
+  {
+    int lowest = heap[0];
+    int last = heap[--size];
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= size)
+        break;
+      if (child + 1 < size && heap[child + 1] < heap[child])
+        child++;
+      if (heap[child] >= last)
+        break;
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = last;
+    return lowest;
+  }
+}
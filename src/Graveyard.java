@@ -0,0 +1,140 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * @brief What is left of files and people evicted from memory
+ *
+ * A node dead for long enough is dropped and only the few values needed to
+ * bring it back as it was are kept here, in arrays indexed by the node id:
+ * its touches, colour and colour count.  Its position stays in its
+ * EntityStore.  A record with zero touches is no record at all.
+ */
+public class Graveyard
+{
+  private int[] touches = new int[0];
+  private int[] color = new int[0];
+  private int[] colorCount = new int[0];
+  private int size;
+
+  /**
+   * Keeps the record of an evicted node, replacing any older one.
+   */
+  public void bury(int id, int touches, int color, int colorCount)
+  {
+    if (id >= this.touches.length)
+      grow(id + 1);
+    if (this.touches[id] == 0)
+      size++;
+    this.touches[id] = touches;
+    this.color[id] = color;
+    this.colorCount[id] = colorCount;
+  }
+
+  private void grow(int min)
+  {
+    int capacity = Math.max(min, Math.max(64, touches.length * 2));
+    touches = Arrays.copyOf(touches, capacity);
+    color = Arrays.copyOf(color, capacity);
+    colorCount = Arrays.copyOf(colorCount, capacity);
+  }
+
+  /**
+   * @return true if there is a record for id
+   */
+  public boolean isBuried(int id)
+  {
+    return id < touches.length && touches[id] != 0;
+  }
+
+  /**
+   * Forgets the record for id, once the node is back.
+   */
+  public void exhume(int id)
+  {
+    if (isBuried(id)) {
+      touches[id] = 0;
+      size--;
+    }
+  }
+
+  /**
+   * @return the touches of a buried node, 0 if id is not buried
+   */
+  public int touches(int id)
+  {
+    return id < touches.length ? touches[id] : 0;
+  }
+
+  public int color(int id)
+  {
+    return color[id];
+  }
+
+  public int colorCount(int id)
+  {
+    return colorCount[id];
+  }
+
+  /**
+   * @return the number of buried nodes
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * @return one more than the highest id that may be buried
+   */
+  public int capacity()
+  {
+    return touches.length;
+  }
+
+  /**
+   * Writes the records, for read() to restore.
+   */
+  public void write(DataOutput out) throws IOException
+  {
+    out.writeInt(size);
+    for (int id = 0; id < touches.length; id++) {
+      if (touches[id] != 0) {
+        out.writeInt(id);
+        out.writeInt(touches[id]);
+        out.writeInt(color[id]);
+        out.writeInt(colorCount[id]);
+      }
+    }
+  }
+
+  /**
+   * Reads back the records written by write().
+   */
+  public void read(DataInput in) throws IOException
+  {
+    int records = in.readInt();
+    for (int i = 0; i < records; i++)
+      bury(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * @brief FrameSink writing where every living file and person is, frame by frame
+ *
+ * Each frame is written as its date (long), the number of living files
+ * (int) and an id, x, y triple (int, float, float) for each, then the same
+ * for people.  Ids are those of the engine's path and author tables.  The
+ * result is a precomputed layout that can be replayed or compared between
+ * physics engines without simulating again.
+ */
+public class LayoutWriter implements FrameSink, Closeable
+{
+  private final DataOutputStream out;
+
+  public LayoutWriter(String filename) throws IOException
+  {
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+  }
+
+  public void onFrame(SwarmEngine engine)
+  {
+    try {
+      out.writeLong(engine.getDate());
+      writeNodes(engine.getLivingNodes());
+      writeNodes(engine.getLivingPeople());
+    } catch (IOException e) {
+      throw new RuntimeException("Couldn't write the layout", e);
+    }
+  }
+
+  /**
+   * Writes the nodes still alive; the living lists may hold a few whose life
+   * ran out this frame.
+   */
+  private void writeNodes(List<? extends SwarmEngine.Node> living) throws IOException
+  {
+    int alive = 0;
+    for (SwarmEngine.Node n : living) {
+      if (n.life() > 0)
+        alive++;
+    }
+    out.writeInt(alive);
+    for (SwarmEngine.Node n : living) {
+      if (n.life() > 0) {
+        out.writeInt(n.id);
+        out.writeFloat(n.x());
+        out.writeFloat(n.y());
+      }
+    }
+  }
+
+  public void close() throws IOException
+  {
+    out.close();
+  }
+}
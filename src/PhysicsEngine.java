@@ -20,6 +20,9 @@ import javax.vecmath.Vector2f;
  * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.util.List;
+import java.util.SplittableRandom;
+
 /**
  * Abstract interface of any code_swarm physical engine.
  *
@@ -30,6 +33,16 @@ import javax.vecmath.Vector2f;
  */
 public abstract class PhysicsEngine
 {
+  // The simulation whose files and people this engine moves
+  protected SwarmEngine swarm;
+
+  // Every random choice of the engine comes from here, for repeatable runs
+  protected SplittableRandom random = new SplittableRandom();
+
+  // Living people, for queries within a radius, through personGrid(); an
+  // engine sets the cells to its own radius in setup()
+  protected SpatialGrid personGrid = new SpatialGrid(100);
+  private int personGridStep = -1;
 
   /**
    * Initialize the Physical Engine
@@ -37,6 +50,20 @@ public abstract class PhysicsEngine
    */
   public abstract void setup (CodeSwarmConfig p);
 
+  /**
+   * Binds the engine to the simulation it moves, before setup().
+   */
+  public void setSwarm(SwarmEngine swarm) {
+    this.swarm = swarm;
+  }
+
+  /**
+   * Gives the engine its own generator, split from the seeded one of the simulation.
+   */
+  public void setRandom(SplittableRandom random) {
+    this.random = random;
+  }
+
   /**
    * Method that allows Physics Engine to initialize the Frame
    *
@@ -44,6 +71,26 @@ public abstract class PhysicsEngine
   public void initializeFrame() {}
 
 
+  /**
+   * @return personGrid, first brought up to where the living people are if
+   *         it hasn't been since the last decay step.  Only the people who
+   *         changed cells are relinked, and nothing is done in frames where
+   *         nobody asks.
+   */
+  public SpatialGrid personGrid() {
+    if (personGridStep == swarm.getFrame())
+      return personGrid;
+    personGridStep = swarm.getFrame();
+    List<SwarmEngine.PersonNode> people = swarm.getLivingPeople();
+    personGrid.beginSync();
+    for (int i = 0; i < people.size(); i++) {
+      SwarmEngine.PersonNode p = people.get(i);
+      personGrid.sync(p.id, p.x(), p.y());
+    }
+    personGrid.endSync();
+    return personGrid;
+  }
+
   /**
    * Method that allows Physics Engine to finalize the Frame
    *
@@ -51,33 +98,77 @@ public abstract class PhysicsEngine
   public void finalizeFrame() {}
 
 
-  public void onRelax(code_swarm.PersonNode p){}
-  public void onRelax(code_swarm.FileNode f){}
-  public void onRelax(code_swarm.Edge e){}
+  /**
+   * @return how near a moving person has to be to a sleeping one to wake
+   *         it, 0 for people to be woken only by their own edits
+   */
+  public float wakeDistance() {
+    return 0;
+  }
+
+  /**
+   * @return true if the people, and then the files, may be relaxed and
+   *         updated on several threads at once, in separate ranges:
+   *         relaxing or updating a node only moves that node, or files no other node moves, from
+   *         positions no other call of the same loop changes
+   */
+  public boolean isParallel() {
+    return false;
+  }
+
+  public void onRelax(SwarmEngine.PersonNode p){}
+  public void onRelax(SwarmEngine.FileNode f){}
+  public void onRelax(SwarmEngine.Edge e){}
 
-  public void onUpdate(code_swarm.PersonNode p){
+  public void onUpdate(SwarmEngine.PersonNode p){
     updateNode(p);
   }
-  public void onUpdate(code_swarm.FileNode f){
+  public void onUpdate(SwarmEngine.FileNode f){
     updateNode(f);
   }
-  public void onUpdate(code_swarm.Edge edge) {
-    edge.decay();
+  public void onUpdate(SwarmEngine.Edge edge) {}
+
+  /*
+   * The simulation relaxes and updates nodes in ranges of its living lists,
+   * through the methods below.  By default they call the methods above for
+   * each node; an engine can override them to do its per-range work once
+   * and walk the range without allocating.
+   */
+
+  public void relaxEdges(List<SwarmEngine.Edge> edges, int from, int to) {
+    for (int i = from; i < to; i++)
+      onRelax(edges.get(i));
+  }
+  public void relaxFiles(List<SwarmEngine.FileNode> files, int from, int to) {
+    for (int i = from; i < to; i++)
+      onRelax(files.get(i));
+  }
+  public void relaxPeople(List<SwarmEngine.PersonNode> people, int from, int to) {
+    for (int i = from; i < to; i++)
+      onRelax(people.get(i));
   }
-  private void updateNode(code_swarm.Node node) {
-    Vector2f tforce = new Vector2f(node.mPosition.x - node.mLastPosition.x, node.mPosition.y - node.mLastPosition.y);
-    node.mLastPosition = new Vector2f(node.mPosition);
-    tforce.scale(node.mFriction); // Friction!
-    node.mPosition.add(tforce);
 
-    node.decay();
+  public void updateEdges(List<SwarmEngine.Edge> edges, int from, int to) {
+    for (int i = from; i < to; i++)
+      onUpdate(edges.get(i));
+  }
+  public void updateFiles(List<SwarmEngine.FileNode> files, int from, int to) {
+    for (int i = from; i < to; i++)
+      onUpdate(files.get(i));
+  }
+  public void updatePeople(List<SwarmEngine.PersonNode> people, int from, int to) {
+    for (int i = from; i < to; i++)
+      onUpdate(people.get(i));
+  }
+  private void updateNode(SwarmEngine.Node node) {
+    node.store.integrate(node.id); // Keeps moving, slowed down by friction
   }
 
   /**
    *
    * @return Vector2f vector holding the starting location for a Person Node
    */
-  public Vector2f startLocation(code_swarm.PersonNode node){
+  public Vector2f startLocation(SwarmEngine.PersonNode node){
     return randomLocation();
   }
 
@@ -86,7 +177,7 @@ public abstract class PhysicsEngine
    *
    * @return Vector2f vector holding the starting location for a File Node
    */
-  public Vector2f startLocation(code_swarm.FileNode node){
+  public Vector2f startLocation(SwarmEngine.FileNode node){
     return randomLocation();
   }
 
@@ -94,18 +185,18 @@ public abstract class PhysicsEngine
    *
    * @return Vector2f vector holding the starting velocity for a File Node
    */
-  public Vector2f startVelocity(code_swarm.PersonNode node) {
+  public Vector2f startVelocity(SwarmEngine.PersonNode node) {
     return new Vector2f();
   }
 
-  public Vector2f startVelocity(code_swarm.FileNode node) {
-    Vector2f vec = new Vector2f(((float)Math.random()*2 - 1), ((float)Math.random()*2-1));
-    vec.scale((1 / vec.length()) * (float)Math.random() * 15 / node.mass);
+  public Vector2f startVelocity(SwarmEngine.FileNode node) {
+    Vector2f vec = new Vector2f(((float)random.nextDouble()*2 - 1), ((float)random.nextDouble()*2-1));
+    vec.scale((1 / vec.length()) * (float)random.nextDouble() * 15 / node.mass());
     return vec;
   }
 
   public Vector2f randomLocation() {
-    Vector2f vec = new Vector2f(code_swarm.width*(float)Math.random(), code_swarm.height*(float)Math.random());
+    Vector2f vec = new Vector2f(swarm.width*(float)random.nextDouble(), swarm.height*(float)random.nextDouble());
     return vec;
   }
 
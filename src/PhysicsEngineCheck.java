@@ -0,0 +1,179 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * @brief Checks that PhysicsEngineOrderly and PhysicsEngineOrderlyVector move things the same
+ *
+ * Runs the first frames of a project with Orderly, its tree opened down to
+ * every person, then with OrderlyVector one float at a time and with the
+ * Vector API.  All three add up the same pushes and pulls from where the
+ * people were at the start of the frame, in a different order, so they
+ * should only part by float rounding.  The layouts are chaotic and such
+ * differences grow from frame to frame, which is why only a few frames
+ * are compared; set ResumeDate in the config to start them from a
+ * checkpoint with more people about.
+ * <pre>
+ * java --add-modules jdk.incubator.vector PhysicsEngineCheck project.config [frames [tolerance]]
+ * </pre>
+ * Exits with 1 if any file or person ends a frame further than the
+ * tolerance (0.01 px by default) from where Orderly put it.
+ */
+public class PhysicsEngineCheck
+{
+  // The lines of each engine's config, Orderly first
+  private static final String[][] ENGINES = {
+    {"name=PhysicsEngineOrderly", "personTheta=0.00001"},
+    {"name=PhysicsEngineOrderlyVector", "vector=false"},
+    {"name=PhysicsEngineOrderlyVector", "vector=true"}
+  };
+
+  /**
+   * Keeps where the living files and people are after each frame, indexed
+   * by id, and stops the engine after the given number of frames.
+   */
+  private static class Positions implements FrameSink
+  {
+    private final int frames;
+    final List<float[]> files = new ArrayList<float[]>();
+    final List<float[]> people = new ArrayList<float[]>();
+
+    Positions(int frames)
+    {
+      this.frames = frames;
+    }
+
+    public void onFrame(SwarmEngine engine) throws InterruptedException
+    {
+      files.add(positions(engine.getLivingNodes()));
+      people.add(positions(engine.getLivingPeople()));
+      if (files.size() == frames)
+        throw new InterruptedException(); // Enough
+    }
+
+    private static float[] positions(List<? extends SwarmEngine.Node> living)
+    {
+      int ids = 0;
+      for (SwarmEngine.Node n : living)
+        ids = Math.max(ids, n.id + 1);
+      float[] xy = new float[2 * ids];
+      Arrays.fill(xy, Float.NaN);
+      for (SwarmEngine.Node n : living) {
+        if (n.life() > 0) {
+          xy[2 * n.id] = n.x();
+          xy[2 * n.id + 1] = n.y();
+        }
+      }
+      return xy;
+    }
+  }
+
+  /**
+   * Runs the project with one of ENGINES.
+   */
+  private static Positions run(String configFile, String[] engine, int frames) throws IOException
+  {
+    File dir = Files.createTempDirectory("physics_engine").toFile();
+    File engineConfig = new File(dir, "Check.config");
+    Writer out = new FileWriter(engineConfig);
+    try {
+      for (String line : engine)
+        out.write(line + "\n");
+    } finally {
+      out.close();
+    }
+
+    CodeSwarmConfig config = new CodeSwarmConfig(Arrays.asList(new String[]{"defaults/code_swarm.config",
+                                                                            "defaults/user.config",
+                                                                            configFile}));
+    Properties check = new Properties();
+    check.setProperty(CodeSwarmConfig.PHYSICS_ENGINE_CONF_DIR, dir.getPath());
+    check.setProperty(CodeSwarmConfig.PHYSICS_ENGINE_SELECTION, engine[0].substring("name=".length()));
+    check.setProperty(CodeSwarmConfig.CHECKPOINT_DAYS_KEY, "0");
+    config.addPropertiesLayer(check);
+
+    SwarmEngine swarm = new SwarmEngine(config);
+    Positions positions = new Positions(frames);
+    swarm.addSink(positions);
+    swarm.start(config.getStringProperty(CodeSwarmConfig.INPUT_FILE_KEY), configFile);
+    try {
+      swarm.run();
+    } catch (InterruptedException e) {
+      // Stopped after the frames to compare
+    }
+    engineConfig.delete();
+    dir.delete();
+    System.out.println(String.join(" ", engine) + ": " + positions.files.size() + " frames");
+    return positions;
+  }
+
+  /**
+   * @return the largest distance along x or y between a node in a and the
+   *         same node in b, for those in both
+   */
+  private static float maxDifference(float[] a, float[] b)
+  {
+    float max = 0;
+    for (int i = 0; i < Math.min(a.length, b.length); i++) {
+      if (!Float.isNaN(a[i]) && !Float.isNaN(b[i]))
+        max = Math.max(max, Math.abs(a[i] - b[i]));
+    }
+    return max;
+  }
+
+  static public void main(String args[])
+  {
+    if (args.length < 1) {
+      System.err.println("Specify a config file, and optionally the number of frames and the tolerance in pixels.");
+      System.exit(2);
+    }
+    int frames = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    float tolerance = args.length > 2 ? Float.parseFloat(args[2]) : 0.01f;
+    System.out.println("Force kernel: " + ForceKernel.create(true).getClass().getName());
+    try {
+      Positions orderly = run(args[0], ENGINES[0], frames);
+      boolean failed = false;
+      for (int e = 1; e < ENGINES.length; e++) {
+        Positions other = run(args[0], ENGINES[e], frames);
+        float max = 0;
+        int frame = 0;
+        for (; frame < Math.min(orderly.files.size(), other.files.size()); frame++) {
+          max = Math.max(max, maxDifference(orderly.files.get(frame), other.files.get(frame)));
+          max = Math.max(max, maxDifference(orderly.people.get(frame), other.people.get(frame)));
+        }
+        System.out.println("  " + frame + " frames, at most " + max + " px from Orderly");
+        failed |= max > tolerance;
+      }
+      System.out.println(failed ? "FAILED: further than " + tolerance + " px" : "OK");
+      System.exit(failed ? 1 : 0);
+    } catch (IOException e) {
+      System.err.println("Failed due to exception: " + e.getMessage());
+      System.exit(2);
+    }
+  }
+}
@@ -17,7 +17,8 @@
  * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.List;
 import javax.vecmath.Vector2f;
 
 /**
@@ -29,7 +30,34 @@ public class PhysicsEngineOrderly extends PhysicsEngine
 {
   private CodeSwarmConfig cfg;
 
-  private float MIN_DISTANCE_SQR;
+  protected float MIN_DISTANCE_SQR;
+  // Moves of a person away from each one nearer, and towards each one further
+  protected static final float PERSON_PUSH = 0.03f;
+  protected static final float PERSON_PULL = 0.003f;
+  // Opening angle of the tree of people, 0 to go through every pair
+  protected float PERSON_THETA = 0.5f;
+
+  /**
+   * How a person finds the pushes and pulls of all the others.
+   */
+  protected enum Others
+  {
+    /** Pair by pair, moving both of them at once; only on one thread */
+    PAIRS,
+    /** From where they were at the start of the frame, through personTree */
+    TREE,
+    /** From where they were at the start of the frame, through a subclass's othersDisplacement() */
+    OVERRIDDEN
+  }
+  protected Others others = Others.TREE;
+  private final BarnesHutTree personTree = new BarnesHutTree();
+  // Ring slots of each person, by id, extended as its editing list grows
+  private int[][] rings = new int[0][];
+  private final ThreadLocal<float[]> push = new ThreadLocal<float[]>() {
+    protected float[] initialValue() {
+      return new float[2];
+    }
+  };
 
   /**
    * Method for initializing parameters.
@@ -39,61 +67,158 @@ public class PhysicsEngineOrderly extends PhysicsEngine
   {
     cfg = p;
     MIN_DISTANCE_SQR = 40000;
+    personGrid = new SpatialGrid((float) Math.sqrt(MIN_DISTANCE_SQR));
+    if (p != null && p.getStringProperty("personTheta") != null)
+      PERSON_THETA = p.getFloatProperty("personTheta");
+    others = PERSON_THETA > 0 ? Others.TREE : Others.PAIRS;
+  }
+
+  /**
+   * Puts the people where they are at the start of the frame in the tree,
+   * and makes room in their rings for the files they edit.
+   */
+  public void initializeFrame() {
+    List<SwarmEngine.PersonNode> people = swarm.getLivingPeople();
+    for (int i = 0; i < people.size(); i++) {
+      SwarmEngine.PersonNode n = people.get(i);
+      if (n.id >= rings.length)
+        rings = Arrays.copyOf(rings, Math.max(n.id + 1, 2 * rings.length));
+      int[] ring = rings[n.id];
+      int slots = n.editing.size();
+      // At least doubling, so a growing list is rarely computed again
+      if (ring == null || ring.length < 2 * slots)
+        rings[n.id] = ringSlots(n.id, ring == null ? slots : Math.max(slots, ring.length));
+    }
+    if (others != Others.TREE)
+      return;
+    personTree.clear();
+    for (int i = 0; i < people.size(); i++) {
+      SwarmEngine.PersonNode n = people.get(i);
+      personTree.add(n.id, n.x(), n.y());
+    }
+    personTree.build();
   }
 
 
+  /**
+   * Unless it goes pair by pair, a person only reads the others where they
+   * were at the start of the frame, through othersDisplacement(), and only
+   * moves itself and the files it edits.
+   */
+  public boolean isParallel() {
+    return others != Others.PAIRS;
+  }
+
+  /**
+   * A person is pushed by the ones nearer than MIN_DISTANCE, and only
+   * pulled gently by the rest.
+   */
+  public float wakeDistance() {
+    return (float) Math.sqrt(MIN_DISTANCE_SQR);
+  }
+
+  public void onRelax(SwarmEngine.PersonNode pNode) {
+    relax(pNode, push.get());
+  }
+
+  public void relaxPeople(List<SwarmEngine.PersonNode> people, int from, int to) {
+    float[] push = this.push.get();
+    for (int i = from; i < to; i++)
+      relax(people.get(i), push);
+  }
+
   /**
    * Method that allows Physics Engine to modify Speed / Position during the relax phase.
    *
    * @param pNode the node to which the force apply
+   * @param push scratch space of the calling thread
    *
    * @Note Standard physics is "Position Variation = Speed x Duration" with a convention of "Duration=1" between to frames
    */
-  public void onRelax(code_swarm.PersonNode pNode) {
-    Vector2f delta = new Vector2f();
+  private void relax(SwarmEngine.PersonNode pNode, float[] push) {
+    float dx, dy, scale;
 
     // A gentle force to attract pNodes to the center
     // NOTE: this should be done prior to attraction/repulsion forces, otherwise
     // tends to generate a grid-like pattern
-    Vector2f midpoint = new Vector2f(code_swarm.width / 2, code_swarm.height / 2);
-    delta = new Vector2f();
-    delta.sub(midpoint, pNode.mPosition);
+    float midX = swarm.width / 2;
+    float midY = swarm.height / 2;
+    dx = midX - pNode.x();
+    dy = midY - pNode.y();
 
-    delta.scale(1 / delta.length() * 0.003f);
-    pNode.mPosition.add(delta);
+    scale = 1 / length(dx, dy) * 0.003f;
+    pNode.moveBy(dx * scale, dy * scale);
 
     // All person nodes attract each other, but only to a certain point, then they repel with gentle force
-    for (code_swarm.PersonNode n : code_swarm.getLivingPeople()) {
-      if (pNode != n) {
-        delta.sub(pNode.mPosition, n.mPosition);
-        if (delta.lengthSquared() < MIN_DISTANCE_SQR) {
-          // This calculation gives a 'stiff spring' affect
-          //float toMove = ((float)Math.sqrt(MIN_DISTANCE_SQR) - delta.length()) / 10.0f;
-
-          // This calculation gives a much nicer flow
-          float toMove = 0.03f;
-          delta.scale((1 / delta.length()) * toMove);
-
-          n.mPosition.sub(delta);
-          pNode.mPosition.add(delta);
-        } else {
-          float toMove = -0.003f;
-          delta.scale((1 / delta.length()) * toMove);
-
-          n.mPosition.sub(delta);
-          pNode.mPosition.add(delta);
+    if (others != Others.PAIRS) {
+      othersDisplacement(pNode.id, pNode.x(), pNode.y(), push);
+      // Each pair is taken from both ends, as in the loop over every pair below
+      pNode.moveBy(2 * push[0], 2 * push[1]);
+    } else {
+      List<SwarmEngine.PersonNode> people = swarm.getLivingPeople();
+      for (int i = 0; i < people.size(); i++) {
+        SwarmEngine.PersonNode n = people.get(i);
+        if (pNode != n) {
+          dx = pNode.x() - n.x();
+          dy = pNode.y() - n.y();
+          float toMove;
+          if (dx * dx + dy * dy < MIN_DISTANCE_SQR) {
+            // This calculation gives a 'stiff spring' affect
+            //toMove = ((float)Math.sqrt(MIN_DISTANCE_SQR) - length(dx, dy)) / 10.0f;
+
+            // This calculation gives a much nicer flow
+            toMove = PERSON_PUSH;
+          } else {
+            toMove = -PERSON_PULL;
+          }
+          scale = (1 / length(dx, dy)) * toMove;
+          dx *= scale;
+          dy *= scale;
+
+          n.moveBy(-dx, -dy);
+          pNode.moveBy(dx, dy);
         }
       }
     }
 
-    // place the edited files around the person
-    Iterator<code_swarm.FileNode> editedFiles = pNode.editing.iterator();
+    // place the edited files around the person, leaving a hole for the null files
+    List<SwarmEngine.FileNode> editedFiles = pNode.editing;
+    int[] ring = rings[pNode.id];
+    for (int i = 0; i < editedFiles.size(); i++) {
+      SwarmEngine.FileNode file = editedFiles.get(i);
+      if (file == null) continue;
+
+      dx = file.x() - (pNode.x() + ring[2 * i]);
+      dy = file.y() - (pNode.y() + ring[2 * i + 1]);
+      float distance = length(dx, dy);
+      scale = 1 / distance * -0.01f * distance;
+      file.moveBy(dx * scale, dy * scale);
+    }
+  }
+
+  /**
+   * Adds up the moves of a person at (x, y) from the people where they were
+   * at the start of the frame: by PERSON_PUSH away from each one nearer than
+   * MIN_DISTANCE, and by PERSON_PULL towards each one further away.
+   * @param out receives the x and y of the total move
+   */
+  protected void othersDisplacement(int id, float x, float y, float[] out) {
+    personTree.displacement(id, x, y, PERSON_THETA, (float) Math.sqrt(MIN_DISTANCE_SQR),
+                            PERSON_PUSH, PERSON_PULL, out);
+  }
+
+  /**
+   * @return the places of the first slots of the rings of files around a
+   *         person, as x and y offsets from it
+   */
+  private static int[] ringSlots(int id, int slots) {
+    int[] ring = new int[2 * slots];
     int index = 0;
     int radius = 45;
     final int node_size = 4;
-    final int salt = pNode.hashCode(); // used to randomize orientation of circle of nodes
+    final int salt = salt(id); // used to randomize orientation of circle of nodes
     int num_nodes_in_ring = (int)((2 * radius * Math.PI) / node_size);
-    while(editedFiles.hasNext()){
+    for (int i = 0; i < slots; i++) {
       //if we've placed all the nodes in this ring...
       if (index == num_nodes_in_ring){
         //start on a new ring
@@ -103,43 +228,47 @@ public class PhysicsEngineOrderly extends PhysicsEngine
       }
       index++;
 
-      code_swarm.FileNode file = editedFiles.next();
-      //leave a hole for the null files
-      if (file == null) continue;
-
       final int place_around_ring = index * num_nodes_in_ring + salt;
-      int x = (int)(radius * Math.sin(place_around_ring));
-      int y = (int)(radius * Math.cos(place_around_ring));
-
-      delta = new Vector2f();
-      delta.sub(file.mPosition, new Vector2f(pNode.mPosition.x + x,pNode.mPosition.y + y));
-      float distance = delta.length();
-      delta.scale(1 / delta.length() * -0.01f * distance);
-      file.mPosition.add(delta);
+      ring[2 * i] = (int)(radius * Math.sin(place_around_ring));
+      ring[2 * i + 1] = (int)(radius * Math.cos(place_around_ring));
     }
+    return ring;
+  }
+
+  /**
+   * @return a scrambled number that stays the same for a person, even when
+   *         the generators are reseeded at a checkpoint
+   */
+  private static int salt(int id) {
+    long z = id * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+    z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return (int) (z ^ (z >>> 33));
+  }
+
+  private static float length(float dx, float dy) {
+    return (float) Math.sqrt(dx * dx + dy * dy);
   }
 
   /**
    *
    * @return Vector2f vector holding the starting location for a Person Node
    */
-  public Vector2f pStartLocation(){
+  public Vector2f startLocation(SwarmEngine.PersonNode node){
     // Try to place the new node in a location that won't disrupt the system too much (by being too close to another person)
-    for (int i = 0; i < 100; i++) {
+    SpatialGrid people = personGrid();
+    float distance = (float) Math.sqrt(MIN_DISTANCE_SQR);
+    Vector2f start = null;
+    for (int i = 0; i < 100 && start == null; i++) {
       Vector2f testStart = this.randomLocation();
-      boolean good = true;
-      for (code_swarm.PersonNode n : code_swarm.getLivingPeople()) {
-        Vector2f delta = new Vector2f();
-        delta.sub(n.mPosition, testStart);
-        if (delta.lengthSquared() < MIN_DISTANCE_SQR) {
-          good = false;
-          break;
-        }
-      }
-      if (good)
-        return testStart;
+      if (!people.anyNear(testStart.x, testStart.y, distance))
+        start = testStart;
     }
-    return randomLocation();
+    if (start == null)
+      start = randomLocation();
+    // Later people placed in the same frame keep clear of this one too
+    people.sync(node.id, start.x, start.y);
+    return start;
   }
 }
 
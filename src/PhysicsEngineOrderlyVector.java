@@ -0,0 +1,110 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @brief PhysicsEngineOrderly with the forces between people over flat arrays, several at a time
+ *
+ * Instead of the tree, every person is pushed and pulled by every other
+ * one, from where they all were at the start of the frame, in one loop
+ * over the positions copied to flat arrays.  That loop and the Verlet steps
+ * go through a ForceKernel: the JDK's Vector API one when java runs with
+ * --add-modules jdk.incubator.vector, one float at a time otherwise, or
+ * when the engine's config says vector=false.
+ *
+ * @see PhysicsEngineOrderly
+ */
+public class PhysicsEngineOrderlyVector extends PhysicsEngineOrderly
+{
+  private ForceKernel kernel;
+
+  // Living people where they were at the start of the frame, in order
+  private int starts;
+  private float[] startX = new float[0];
+  private float[] startY = new float[0];
+  // Index of each living person in those, by id
+  private int[] startIndex = new int[0];
+
+  // Ids of a range of nodes for the Verlet step, for each thread
+  private final ThreadLocal<int[]> ids = new ThreadLocal<int[]>() {
+    protected int[] initialValue() {
+      return new int[0];
+    }
+  };
+
+  public void setup (CodeSwarmConfig p)
+  {
+    super.setup(p);
+    // No tree, every pair is gone through in othersDisplacement()
+    others = Others.OVERRIDDEN;
+    boolean vector = p == null || p.getStringProperty("vector") == null || p.getBooleanProperty("vector");
+    kernel = ForceKernel.create(vector);
+  }
+
+  /**
+   * Copies where the living people are to the flat arrays.
+   */
+  public void initializeFrame() {
+    super.initializeFrame();
+    List<SwarmEngine.PersonNode> people = swarm.getLivingPeople();
+    starts = people.size();
+    if (starts > startX.length) {
+      startX = Arrays.copyOf(startX, Math.max(starts, 2 * startX.length));
+      startY = Arrays.copyOf(startY, startX.length);
+    }
+    for (int i = 0; i < starts; i++) {
+      SwarmEngine.PersonNode n = people.get(i);
+      if (n.id >= startIndex.length)
+        startIndex = Arrays.copyOf(startIndex, Math.max(n.id + 1, 2 * startIndex.length));
+      startX[i] = n.x();
+      startY[i] = n.y();
+      startIndex[n.id] = i;
+    }
+  }
+
+  protected void othersDisplacement(int id, float x, float y, float[] out) {
+    kernel.displacement(startX, startY, starts, startIndex[id], x, y, MIN_DISTANCE_SQR,
+                        PERSON_PUSH, PERSON_PULL, out);
+  }
+
+  public void updateFiles(List<SwarmEngine.FileNode> files, int from, int to) {
+    int[] ids = ids(to - from);
+    for (int i = from; i < to; i++)
+      ids[i - from] = files.get(i).id;
+    swarm.fileStore.integrate(ids, to - from, kernel);
+  }
+
+  public void updatePeople(List<SwarmEngine.PersonNode> people, int from, int to) {
+    int[] ids = ids(to - from);
+    for (int i = from; i < to; i++)
+      ids[i - from] = people.get(i).id;
+    swarm.personStore.integrate(ids, to - from, kernel);
+  }
+
+  private int[] ids(int count) {
+    int[] ids = this.ids.get();
+    if (ids.length < count) {
+      ids = new int[Math.max(count, 2 * ids.length)];
+      this.ids.set(ids);
+    }
+    return ids;
+  }
+}
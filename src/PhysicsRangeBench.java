@@ -0,0 +1,185 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @brief Times a physics engine's range calls against one call per node, and counts what they allocate
+ *
+ * Runs a project up to a frame, then steps the physics of the files and
+ * people alive at that frame over and over, with nothing added or
+ * expiring: once through the engine's relaxPeople() and the other range
+ * methods, once through onRelax() and onUpdate() for each node.  The
+ * allocations are those of this thread, as the JVM counts them.
+ * <pre>
+ * java PhysicsRangeBench project.config [frame [rounds]]
+ * </pre>
+ */
+public class PhysicsRangeBench
+{
+  /**
+   * Stops the engine at the given frame.
+   */
+  private static class StopAt implements FrameSink
+  {
+    private final int frame;
+
+    StopAt(int frame)
+    {
+      this.frame = frame;
+    }
+
+    public void onFrame(SwarmEngine engine) throws InterruptedException
+    {
+      if (engine.getFrame() >= frame)
+        throw new InterruptedException();
+    }
+  }
+
+  private static void stepRanges(PhysicsEngine pe, SwarmEngine swarm)
+  {
+    List<SwarmEngine.Edge> edges = swarm.getLivingEdges();
+    List<SwarmEngine.FileNode> files = swarm.getLivingNodes();
+    List<SwarmEngine.PersonNode> people = swarm.getLivingPeople();
+    pe.initializeFrame();
+    pe.relaxEdges(edges, 0, edges.size());
+    pe.relaxFiles(files, 0, files.size());
+    pe.relaxPeople(people, 0, people.size());
+    pe.updateEdges(edges, 0, edges.size());
+    pe.updateFiles(files, 0, files.size());
+    pe.updatePeople(people, 0, people.size());
+    pe.finalizeFrame();
+  }
+
+  private static void stepNodes(PhysicsEngine pe, SwarmEngine swarm)
+  {
+    List<SwarmEngine.Edge> edges = swarm.getLivingEdges();
+    List<SwarmEngine.FileNode> files = swarm.getLivingNodes();
+    List<SwarmEngine.PersonNode> people = swarm.getLivingPeople();
+    pe.initializeFrame();
+    for (int i = 0; i < edges.size(); i++)
+      pe.onRelax(edges.get(i));
+    for (int i = 0; i < files.size(); i++)
+      pe.onRelax(files.get(i));
+    for (int i = 0; i < people.size(); i++)
+      pe.onRelax(people.get(i));
+    for (int i = 0; i < edges.size(); i++)
+      pe.onUpdate(edges.get(i));
+    for (int i = 0; i < files.size(); i++)
+      pe.onUpdate(files.get(i));
+    for (int i = 0; i < people.size(); i++)
+      pe.onUpdate(people.get(i));
+    pe.finalizeFrame();
+  }
+
+  /**
+   * @return bytes allocated by this thread so far, or -1 if the JVM doesn't say
+   */
+  private static long allocated()
+  {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean)
+      return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    return -1;
+  }
+
+  private static void measure(String name, PhysicsEngine pe, SwarmEngine swarm, boolean ranges, int rounds)
+  {
+    // Warm up first, so the JIT has compiled the steps being timed
+    for (int i = 0; i < rounds; i++) {
+      if (ranges)
+        stepRanges(pe, swarm);
+      else
+        stepNodes(pe, swarm);
+    }
+    long bytes = allocated();
+    long start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      if (ranges)
+        stepRanges(pe, swarm);
+      else
+        stepNodes(pe, swarm);
+    }
+    double millis = (System.nanoTime() - start) / 1e6;
+    bytes = allocated() - bytes;
+    System.out.println(String.format("%-9s %8.3f ms/frame %10s B/frame", name, millis / rounds,
+                                     bytes < 0 ? "?" : String.valueOf(bytes / rounds)));
+  }
+
+  /**
+   * @return the config of the named engine in PhysicsEngineConfigDir, or
+   *         null for its defaults if there is none
+   */
+  private static CodeSwarmConfig engineConfig(CodeSwarmConfig config, String name) throws IOException
+  {
+    File dir = new File(config.getStringProperty(CodeSwarmConfig.PHYSICS_ENGINE_CONF_DIR));
+    String[] files = dir.list();
+    for (int i = 0; files != null && i < files.length; i++) {
+      if (files[i].endsWith(".config")) {
+        CodeSwarmConfig engine = new CodeSwarmConfig(new File(dir, files[i]).getPath());
+        if (name.equals(engine.getStringProperty("name")))
+          return engine;
+      }
+    }
+    return null;
+  }
+
+  static public void main(String args[])
+  {
+    if (args.length < 1) {
+      System.err.println("Specify a config file, and optionally the frame to stop at and the number of rounds.");
+      System.exit(2);
+    }
+    int frame = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+    try {
+      List<String> configFileStack = Arrays.asList(new String[]{"defaults/code_swarm.config",
+                                                                "defaults/user.config",
+                                                                args[0]});
+      CodeSwarmConfig config = new CodeSwarmConfig(configFileStack);
+      SwarmEngine swarm = new SwarmEngine(config);
+      swarm.addSink(new StopAt(frame));
+      swarm.start(config.getStringProperty(CodeSwarmConfig.INPUT_FILE_KEY), args[0]);
+      try {
+        swarm.run();
+      } catch (InterruptedException e) {
+        // Stopped at the frame to measure
+      }
+      System.out.println(swarm.getPhysicsEngineName() + " at frame " + swarm.getFrame() + ": "
+                         + swarm.getLivingEdges().size() + " edges, " + swarm.getLivingNodes().size() + " files, "
+                         + swarm.getLivingPeople().size() + " people");
+
+      // An engine of its own, so the one that ran keeps its state
+      PhysicsEngine pe = swarm.getPhysicsEngine(swarm.getPhysicsEngineName());
+      pe.setSwarm(swarm);
+      pe.setup(engineConfig(config, swarm.getPhysicsEngineName()));
+      measure("ranges", pe, swarm, true, rounds);
+      measure("per node", pe, swarm, false, rounds);
+      System.exit(0);
+    } catch (IOException e) {
+      System.err.println("Failed due to exception: " + e.getMessage());
+      System.exit(2);
+    }
+  }
+}
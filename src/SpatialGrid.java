@@ -0,0 +1,254 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+
+/**
+ * @brief Uniform grid of points, hashed by cell, for queries within a radius
+ *
+ * Space is cut in square cells as wide as the radius of the queries, so a
+ * query looks at no more than the 3x3 cells around its point and costs the
+ * number of points there rather than the number of points overall.  Cells
+ * are hashed into a table of lists linked through arrays indexed by id, so
+ * the grid has no bounds and a point moving within its cell costs nothing.
+ *
+ * Points are tracked by id between sync() calls: each call moves the points
+ * it is given, and endSync() drops those it was not given since beginSync().
+ */
+public class SpatialGrid
+{
+  private final float cellSize;
+
+  // Per id: position, cell, slot in the table (-1 untracked), list links
+  private float[] x = new float[0];
+  private float[] y = new float[0];
+  private int[] cellX = new int[0];
+  private int[] cellY = new int[0];
+  private int[] slot = new int[0];
+  private int[] next = new int[0];
+  private int[] prev = new int[0];
+  private int[] seen = new int[0];
+  private int sync;
+
+  // Tracked ids, densely
+  private int size;
+  private int[] members = new int[0];
+  private int[] memberIndex = new int[0];
+
+  // First id of each slot, -1 for none
+  private int[] heads = new int[0];
+
+  private int found;
+  private int[] results = new int[64];
+
+  /**
+   * @param cellSize side of a cell, best set to the radius of the queries
+   */
+  public SpatialGrid(float cellSize)
+  {
+    this.cellSize = cellSize;
+    rehash(256);
+  }
+
+  /**
+   * Starts a round of sync() calls.
+   */
+  public void beginSync()
+  {
+    sync++;
+  }
+
+  /**
+   * Puts id at (x, y), relinking it only if it changed cells.
+   */
+  public void sync(int id, float x, float y)
+  {
+    if (id >= slot.length)
+      grow(id + 1);
+    this.x[id] = x;
+    this.y[id] = y;
+    seen[id] = sync;
+    int cx = (int) Math.floor(x / cellSize);
+    int cy = (int) Math.floor(y / cellSize);
+    if (slot[id] >= 0) {
+      if (cellX[id] == cx && cellY[id] == cy)
+        return;
+      unlink(id);
+      cellX[id] = cx;
+      cellY[id] = cy;
+      link(id);
+      return;
+    }
+    if (size == members.length)
+      members = Arrays.copyOf(members, Math.max(64, size * 2));
+    memberIndex[id] = size;
+    members[size++] = id;
+    cellX[id] = cx;
+    cellY[id] = cy;
+    // Keep about a slot per id
+    if (size > heads.length)
+      rehash(heads.length * 2);
+    else
+      link(id);
+  }
+
+  /**
+   * Drops the ids not given to sync() since beginSync().
+   */
+  public void endSync()
+  {
+    for (int i = size - 1; i >= 0; i--) {
+      int id = members[i];
+      if (seen[id] != sync)
+        remove(id);
+    }
+  }
+
+  /**
+   * Stops tracking id.
+   */
+  public void remove(int id)
+  {
+    if (id >= slot.length || slot[id] < 0)
+      return;
+    unlink(id);
+    slot[id] = -1;
+    int last = members[--size];
+    members[memberIndex[id]] = last;
+    memberIndex[last] = memberIndex[id];
+  }
+
+  /**
+   * Finds the ids strictly nearer to (x, y) than radius, to be read with
+   * result().  The order they come in depends on the history of the grid.
+   * @return how many there are
+   */
+  public int near(float x, float y, float radius)
+  {
+    return scan(x, y, radius, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @return true if any id is strictly nearer to (x, y) than radius
+   */
+  public boolean anyNear(float x, float y, float radius)
+  {
+    return scan(x, y, radius, 1) > 0;
+  }
+
+  private int scan(float x, float y, float radius, int enough)
+  {
+    float radius2 = radius * radius;
+    int x0 = (int) Math.floor((x - radius) / cellSize);
+    int x1 = (int) Math.floor((x + radius) / cellSize);
+    int y0 = (int) Math.floor((y - radius) / cellSize);
+    int y1 = (int) Math.floor((y + radius) / cellSize);
+    found = 0;
+    for (int cy = y0; cy <= y1; cy++) {
+      for (int cx = x0; cx <= x1; cx++) {
+        // Other cells may share the slot, so check the cell of each id
+        for (int id = heads[hash(cx, cy)]; id >= 0; id = next[id]) {
+          if (cellX[id] != cx || cellY[id] != cy)
+            continue;
+          float dx = this.x[id] - x;
+          float dy = this.y[id] - y;
+          if (dx * dx + dy * dy < radius2) {
+            if (found == results.length)
+              results = Arrays.copyOf(results, found * 2);
+            results[found++] = id;
+            if (found == enough)
+              return found;
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * @return the i-th id found by the last near()
+   */
+  public int result(int i)
+  {
+    return results[i];
+  }
+
+  /**
+   * @return the position of id as of its last sync()
+   */
+  public float x(int id)
+  {
+    return x[id];
+  }
+
+  public float y(int id)
+  {
+    return y[id];
+  }
+
+  private int hash(int cx, int cy)
+  {
+    return (cx * 0x9E3779B1 + cy * 0x85EBCA77) >>> 7 & (heads.length - 1);
+  }
+
+  private void link(int id)
+  {
+    int s = hash(cellX[id], cellY[id]);
+    slot[id] = s;
+    prev[id] = -1;
+    next[id] = heads[s];
+    if (heads[s] >= 0)
+      prev[heads[s]] = id;
+    heads[s] = id;
+  }
+
+  private void unlink(int id)
+  {
+    if (prev[id] >= 0)
+      next[prev[id]] = next[id];
+    else
+      heads[slot[id]] = next[id];
+    if (next[id] >= 0)
+      prev[next[id]] = prev[id];
+  }
+
+  private void rehash(int slots)
+  {
+    heads = new int[slots];
+    Arrays.fill(heads, -1);
+    for (int i = 0; i < size; i++)
+      link(members[i]);
+  }
+
+  private void grow(int min)
+  {
+    int old = slot.length;
+    int capacity = Math.max(min, Math.max(64, old * 2));
+    x = Arrays.copyOf(x, capacity);
+    y = Arrays.copyOf(y, capacity);
+    cellX = Arrays.copyOf(cellX, capacity);
+    cellY = Arrays.copyOf(cellY, capacity);
+    slot = Arrays.copyOf(slot, capacity);
+    next = Arrays.copyOf(next, capacity);
+    prev = Arrays.copyOf(prev, capacity);
+    seen = Arrays.copyOf(seen, capacity);
+    memberIndex = Arrays.copyOf(memberIndex, capacity);
+    Arrays.fill(slot, old, capacity, -1);
+  }
+}
@@ -0,0 +1,2230 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.vecmath.Vector2f;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import org.codeswarm.repository.git.GitLogCursor;
+import org.codeswarm.repositoryevents.BinaryEventFormat;
+import org.codeswarm.repositoryevents.BinaryEventReader;
+import org.codeswarm.repositoryevents.CompressedInput;
+import org.codeswarm.repositoryevents.EventCursor;
+import org.codeswarm.repositoryevents.EventIndex;
+import org.codeswarm.repositoryevents.EventSlice;
+import org.codeswarm.repositoryevents.ExternalEventSorter;
+import org.codeswarm.repositoryevents.FollowingChannel;
+import org.codeswarm.repositoryevents.FrameSlicer;
+import org.codeswarm.repositoryevents.ParallelXMLEventParser;
+import org.codeswarm.repositoryevents.SliceRing;
+import org.codeswarm.repositoryevents.StringTable;
+import org.codeswarm.repositoryevents.XMLEventScanner;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * @brief The simulation behind code_swarm, without any drawing
+ *
+ * The engine reads the events, turns each frame's worth of them into files,
+ * people and edges, ages them and drives the physics engine over them.  It
+ * does not depend on Processing: after each frame it hands itself to its
+ * FrameSinks, which copy out what they need.  code_swarm is the sink that
+ * draws; main() runs the simulation alone, as fast as it goes.
+ */
+public class SwarmEngine {
+  long UPDATE_DELTA = -1;
+
+  // Data storage
+  // Events are handed from the loader to the simulation a frame at a time
+  SliceRing<EventSlice> eventSlices;
+  static final int EVENT_RING_SLICES = 256;
+  static final int MAX_SLICE_EVENTS = 8192;
+  boolean isInputSorted = false;
+  // Keep reading the input as it is appended to, in step with wall time
+  boolean followInput = false;
+  long followPollMillis;
+  // Dictionaries built at ingest; their ids index nodes and people
+  protected StringTable authorNames;
+  protected StringTable pathNames;
+  protected FileNode[] nodes;
+  protected int nodeCount;
+  protected EdgeTable edges;
+  protected PersonNode[] people;
+  protected int peopleCount;
+  // Where files and people are and how alive they are, by id
+  protected EntityStore fileStore;
+  protected EntityStore personStore;
+
+  // Liveness cache, kept up to date as things are freshened and expire
+  List<PersonNode> livingPeople = new ArrayList<PersonNode>();
+  List<Edge> livingEdges = new ArrayList<Edge>();
+  List<FileNode> livingNodes = new ArrayList<FileNode>();
+  // Nodes slower than SLEEP_SPEED for SLEEP_FRAMES frames sleep: they are
+  // neither relaxed nor updated until they are freshened, or woken by a
+  // person moving near them or by the person editing them moving.  Only the
+  // awake lists are gone through each frame; they are the living lists when
+  // sleep is off.
+  private float SLEEP_SPEED;
+  private int SLEEP_FRAMES;
+  private List<FileNode> awakeNodes = livingNodes;
+  private List<PersonNode> awakePeople = livingPeople;
+  // Whether the awake file or person at each index fell asleep this frame
+  private boolean[] nodesFell = new boolean[0];
+  private boolean[] peopleFell = new boolean[0];
+  private final List<PersonNode> movedPeople = new ArrayList<PersonNode>();
+  private int[] waking = new int[16];
+  // Life is computed from the number of decay steps (one per frame) done
+  int decaySteps = 0;
+  TimingWheel<Drawable> expiries;
+  private List<Drawable> expiring = new ArrayList<Drawable>();
+  // Files and people are evicted this many steps after they were last freshened (-1 never)
+  int evictionHorizon = -1;
+  TimingWheel<Node> evictions;
+  private List<Node> evicting = new ArrayList<Node>();
+  // What is kept of evicted files and people, to bring them back as they were
+  Graveyard buriedNodes = new Graveyard();
+  Graveyard buriedPeople = new Graveyard();
+  // Dead objects kept for reuse instead of being left to the garbage collector
+  static final int POOL_LIMIT = 4096;
+  private List<FileNode> nodePool = new ArrayList<FileNode>();
+  private List<PersonNode> personPool = new ArrayList<PersonNode>();
+  private List<Edge> edgePool = new ArrayList<Edge>();
+
+  LinkedList<ColorBins> history;
+  volatile boolean finishedLoading = false;
+  private final List<FrameSink> sinks = new ArrayList<FrameSink>();
+
+  // Temporary variables
+  EventSlice currentSlice;
+  int sliceIndex;
+  long nextDate;
+  long prevDate;
+  FileNode prevNode;
+  int maxTouches;
+  private long lastUpdateDuration;
+
+  //used to ensure that input is sorted when we're told it is
+  long maximumDateSeenSoFar = 0;
+
+  // Color mapper
+  ColorAssigner colorAssigner;
+  // Every random choice comes from generators split per subsystem off this seed
+  private long randomSeed;
+
+  // Checkpoints of the whole simulation, every CHECKPOINT_PERIOD ms of history (0 for none)
+  static final int CHECKPOINT_VERSION = 2;
+  private long CHECKPOINT_PERIOD;
+  private File checkpointDir;
+  private long RESUME_DATE;
+  private long nextCheckpointDate;
+  // The generators are split afresh at every day of history, where any
+  // checkpoint falls, so that writing checkpoints doesn't change the frames
+  static final long RESEED_PERIOD = 86400000L;
+  private long nextReseedDate;
+
+  // Edge Length
+  protected int EDGE_LEN;
+  // Drawable object life decrement
+  private int EDGE_LIFE_INIT;
+  private int FILE_LIFE_INIT;
+  private int PERSON_LIFE_INIT;
+  private int EDGE_LIFE_DECREMENT;
+  private int FILE_LIFE_DECREMENT;
+  private int PERSON_LIFE_DECREMENT;
+
+  private float FILE_MASS;
+  private float PERSON_MASS;
+
+  // Number of events sorted in memory at once when the input isn't sorted
+  private int SORT_RUN_SIZE;
+  // Number of threads parsing xml input, 1 parses on the loader thread
+  private int PARSE_THREADS;
+  private static final int PARSE_CHUNK_SIZE = 8 << 20;
+  // Threads moving nodes when the engine allows it, none for just this one
+  private ForkJoinPool physicsPool = null;
+  // Fewest nodes a physics task splits in two
+  private static final int PHYSICS_GRAIN = 256;
+  // Window of history to show, read through the input's index when it has one
+  private long START_DATE;
+  private long END_DATE;
+  private long INDEX_BUCKET_LENGTH;
+  private int maxBackgroundThreads;
+
+  // Physics engine configuration
+  String          physicsEngineConfigDir;
+  volatile String physicsEngineSelection;
+  LinkedList<peConfig> mPhysicsEngineChoices = new LinkedList<peConfig>();
+  PhysicsEngine  mPhysicsEngine = null;
+  private boolean safeToToggle = false;
+  private volatile boolean wantToToggle = false;
+  private volatile boolean toggleDirection = false;
+
+  protected CodeSwarmConfig cfg;
+  protected String userConfigFilename = null;
+  // Follow mode: time the newest event of the last frame was appended to the input
+  private long newestAppendTime = 0;
+  // The area people are kept in
+  protected int width=0;
+  protected int height=0;
+
+  // Fetches avatars ahead of the people showing up, when there is one
+  protected AvatarFetcher avatarFetcher = null;
+
+  /**
+   * Reads the simulation settings and sets up the physics engines.
+   * @param cfg the configuration
+   */
+  public SwarmEngine(CodeSwarmConfig cfg) {
+    this.cfg = cfg;
+    width=cfg.getPositiveIntProperty(CodeSwarmConfig.WIDTH_KEY);
+    height=cfg.getPositiveIntProperty(CodeSwarmConfig.HEIGHT_KEY);
+    maxBackgroundThreads = cfg.getPositiveIntProperty(CodeSwarmConfig.MAX_THREADS_KEY);
+
+    // Ensure we have sane values.
+    EDGE_LIFE_INIT = cfg.getPositiveIntProperty(CodeSwarmConfig.EDGE_LIFE_KEY);
+    FILE_LIFE_INIT = cfg.getPositiveIntProperty(CodeSwarmConfig.FILE_LIFE_KEY);
+    PERSON_LIFE_INIT = cfg.getPositiveIntProperty(CodeSwarmConfig.PERSON_LIFE_KEY);
+
+    /* enforce decrements < 0 */
+    EDGE_LIFE_DECREMENT = cfg.getNegativeIntProperty(CodeSwarmConfig.EDGE_DECREMENT_KEY);
+    FILE_LIFE_DECREMENT = cfg.getNegativeIntProperty(CodeSwarmConfig.FILE_DECREMENT_KEY);
+    PERSON_LIFE_DECREMENT = cfg.getNegativeIntProperty(CodeSwarmConfig.PERSON_DECREMENT_KEY);
+    int edgeLifetime = lifetime(EDGE_LIFE_INIT, EDGE_LIFE_DECREMENT);
+    int fileLifetime = lifetime(FILE_LIFE_INIT, FILE_LIFE_DECREMENT);
+    int personLifetime = lifetime(PERSON_LIFE_INIT, PERSON_LIFE_DECREMENT);
+    int longestLifetime = Math.max(edgeLifetime, Math.max(fileLifetime, personLifetime));
+    expiries = new TimingWheel<Drawable>(longestLifetime);
+
+    FILE_MASS = cfg.getFloatProperty(CodeSwarmConfig.FILE_MASS_KEY);
+    PERSON_MASS = cfg.getFloatProperty(CodeSwarmConfig.PERSON_MASS_KEY);
+
+    double framesperday = cfg.getDoubleProperty(CodeSwarmConfig.FRAMES_PER_DAY_KEY);
+    UPDATE_DELTA = (long) (86400000 / framesperday);
+
+    // Nothing is evicted before every edge to it is dead, so something that never dies disables it
+    int evictAfterDays = cfg.getIntProperty(CodeSwarmConfig.EVICT_AFTER_DAYS_KEY);
+    if (evictAfterDays >= 0 && Math.min(edgeLifetime, Math.min(fileLifetime, personLifetime)) >= 0) {
+      evictionHorizon = longestLifetime + (int) Math.ceil(evictAfterDays * framesperday);
+      evictions = new TimingWheel<Node>(evictionHorizon);
+    }
+
+    isInputSorted = cfg.getBooleanProperty(CodeSwarmConfig.IS_INPUT_SORTED_KEY);
+    followInput = cfg.getBooleanProperty(CodeSwarmConfig.FOLLOW_INPUT_KEY);
+    followPollMillis = cfg.getLongProperty(CodeSwarmConfig.FOLLOW_POLL_MILLIS_KEY);
+    SORT_RUN_SIZE = cfg.getPositiveIntProperty(CodeSwarmConfig.SORT_RUN_SIZE_KEY);
+    PARSE_THREADS = cfg.getPositiveIntProperty(CodeSwarmConfig.PARSE_THREADS_KEY);
+    int physicsThreads = cfg.getPositiveIntProperty(CodeSwarmConfig.PHYSICS_THREADS_KEY);
+    SLEEP_SPEED = cfg.getFloatProperty(CodeSwarmConfig.SLEEP_SPEED_KEY);
+    SLEEP_FRAMES = cfg.getPositiveIntProperty(CodeSwarmConfig.SLEEP_FRAMES_KEY);
+    if (SLEEP_SPEED > 0) {
+      awakeNodes = new ArrayList<FileNode>();
+      awakePeople = new ArrayList<PersonNode>();
+    }
+    if (physicsThreads > 1)
+      physicsPool = new ForkJoinPool(physicsThreads);
+    START_DATE = cfg.getDateProperty(CodeSwarmConfig.START_DATE_KEY, Long.MIN_VALUE);
+    END_DATE = cfg.getDateProperty(CodeSwarmConfig.END_DATE_KEY, Long.MAX_VALUE);
+    INDEX_BUCKET_LENGTH = cfg.getPositiveIntProperty(CodeSwarmConfig.INDEX_BUCKET_DAYS_KEY) * 86400000L;
+    EDGE_LEN = cfg.getPositiveIntProperty(CodeSwarmConfig.EDGE_LENGTH_KEY);
+    randomSeed = cfg.getLongProperty(CodeSwarmConfig.RANDOM_SEED_KEY);
+    CHECKPOINT_PERIOD = cfg.getPositiveIntProperty(CodeSwarmConfig.CHECKPOINT_DAYS_KEY) * 86400000L;
+    checkpointDir = new File(cfg.getStringProperty(CodeSwarmConfig.CHECKPOINT_DIR_KEY));
+    RESUME_DATE = cfg.getDateProperty(CodeSwarmConfig.RESUME_DATE_KEY, Long.MIN_VALUE);
+
+    /**
+     * This section loads config files and calls the setup method for all physics engines.
+     */
+
+    physicsEngineConfigDir = cfg.getStringProperty( CodeSwarmConfig.PHYSICS_ENGINE_CONF_DIR);
+    physicsEngineSelection = cfg.getStringProperty( CodeSwarmConfig.PHYSICS_ENGINE_SELECTION);
+    File f = new File(physicsEngineConfigDir);
+    String[] configFiles = null;
+    if ( f.exists()  &&  f.isDirectory() ) {
+      configFiles = f.list();
+      Arrays.sort(configFiles); // engines get their generators in a fixed order
+    }
+    for (int i=0; configFiles != null  &&  i<configFiles.length; i++) {
+      if (configFiles[i].endsWith(".config")) {
+        String ConfigPath = physicsEngineConfigDir + System.getProperty("file.separator") + configFiles[i];
+        CodeSwarmConfig physicsConfig = null;
+        try {
+
+          physicsConfig = new CodeSwarmConfig(ConfigPath);
+        } catch (IOException e) {
+          e.printStackTrace();
+          System.exit(1);
+        }
+        String ClassName = physicsConfig.getStringProperty("name");
+        if (ClassName != null && physicsConfig.getBooleanProperty("optional") && !ClassName.equals(physicsEngineSelection))
+          continue; // Only set up when it is the one selected
+        if (ClassName != null) {
+          PhysicsEngine pe = getPhysicsEngine(ClassName);
+          pe.setSwarm(this);
+          pe.setup(physicsConfig);
+          peConfig pec = new peConfig(ClassName,pe);
+          mPhysicsEngineChoices.add(pec);
+        } else {
+          System.err.println("Skipping config file '" + ConfigPath + "'.  Must specify class name via the 'name' parameter.");
+          System.exit(1);
+        }
+      }
+    }
+
+    if (mPhysicsEngineChoices.size() == 0) {
+      System.err.println("No physics engine config files found in '" + physicsEngineConfigDir + "'.");
+      System.exit(1);
+    }
+
+    // Physics engine configuration and instantiation
+    for (peConfig p : mPhysicsEngineChoices)
+      if (physicsEngineSelection.equals(p.name))
+        mPhysicsEngine = p.pe;
+
+    if (mPhysicsEngine == null) {
+      System.err.println("No physics engine matches your choice of '" + physicsEngineSelection + "'. Check '" + physicsEngineConfigDir + "' for options.");
+      System.exit(1);
+    }
+
+    // init data structures
+    authorNames   = new StringTable();
+    pathNames     = new StringTable();
+    nodes         = new FileNode[1024];
+    edges         = new EdgeTable();
+    people        = new PersonNode[64];
+    fileStore     = new EntityStore();
+    personStore   = new EntityStore();
+    nodeCount     = 0;
+    peopleCount   = 0;
+    history       = new LinkedList<ColorBins>();
+    //Unsorted input goes through an external sort, so we only need to store the next few frames either way
+    eventSlices = new SliceRing<EventSlice>(EVENT_RING_SLICES);
+
+    // Init color map
+    initColors();
+    reseed(0);
+  }
+
+  /**
+   * Gives each subsystem a new generator, split off one made from the seed
+   * and the decay step.  This is done at the start and after the first
+   * frame of every day, checkpoint or not, so that a simulation resumed
+   * from a checkpoint goes on exactly as the one that wrote it.
+   */
+  private void reseed(int step) {
+    SplittableRandom random = new SplittableRandom(new SplittableRandom(randomSeed + step).nextLong());
+    colorAssigner.random = random.split();
+    for (peConfig p : mPhysicsEngineChoices)
+      p.pe.setRandom(random.split());
+  }
+
+  /**
+   * Has the loader fetch each person's avatar as they are first read.
+   */
+  public void setAvatarFetcher(AvatarFetcher fetcher) {
+    avatarFetcher = fetcher;
+  }
+
+  /**
+   * Adds a sink to be handed every frame.
+   */
+  public void addSink(FrameSink sink) {
+    sinks.add(sink);
+  }
+
+  /**
+   * Starts loading the events and waits for the first of them.
+   * @param filename the input, relative to the config file if it is there
+   * @param configFilename the user's config file, or null
+   */
+  public void start(String filename, String configFilename) {
+    userConfigFilename = configFilename;
+    boolean resumed = false;
+    if (RESUME_DATE != Long.MIN_VALUE) {
+      File checkpoint = findCheckpoint(RESUME_DATE);
+      if (checkpoint == null) {
+        System.out.println("No checkpoint before " + new Date(RESUME_DATE) + " in " + checkpointDir + ", starting from the beginning");
+      } else {
+        try {
+          readCheckpoint(checkpoint);
+        } catch (IOException e) {
+          System.out.println("Couldn't resume from " + checkpoint + ": " + e.getMessage());
+          System.exit(1);
+        }
+        // Everything before the checkpoint has been shown; the index skips it if there is one
+        START_DATE = Math.max(START_DATE, prevDate);
+        resumed = true;
+      }
+    }
+
+    loadRepEvents(filename); // event formatted (this is the standard)
+    try {
+      currentSlice = eventSlices.take();
+    } catch (InterruptedException e) {
+      currentSlice = null;
+    }
+    if (resumed) {
+      System.out.println("Resumed at " + new Date(prevDate) + " (frame " + decaySteps + ")");
+    } else if(currentSlice == null){
+      System.out.println("No events found in repository xml file.");
+      System.exit(1);
+    } else {
+      prevDate = currentSlice.getDate(0);
+    }
+    if (CHECKPOINT_PERIOD > 0)
+      nextCheckpointDate = (Math.floorDiv(prevDate, CHECKPOINT_PERIOD) + 1) * CHECKPOINT_PERIOD;
+    nextReseedDate = (Math.floorDiv(prevDate, RESEED_PERIOD) + 1) * RESEED_PERIOD;
+  }
+
+  /**
+   * Simulates frame after frame, handing each to the sinks, until the
+   * input runs out.  Input that is followed never does.
+   */
+  public void run() throws InterruptedException {
+    while (true) {
+      update();
+      for (FrameSink sink : sinks)
+        sink.onFrame(this);
+      if (isFinished())
+        return;
+      if (CHECKPOINT_PERIOD > 0 && prevDate >= nextCheckpointDate) {
+        writeCheckpoint();
+        nextCheckpointDate = (Math.floorDiv(prevDate, CHECKPOINT_PERIOD) + 1) * CHECKPOINT_PERIOD;
+      }
+      if (prevDate >= nextReseedDate) {
+        reseed(decaySteps);
+        nextReseedDate = (Math.floorDiv(prevDate, RESEED_PERIOD) + 1) * RESEED_PERIOD;
+      }
+    }
+  }
+
+  /**
+   * @return true once every event has been shown
+   */
+  public boolean isFinished() {
+    return currentSlice == null && eventSlices.isFinished();
+  }
+
+  /**
+   * @return the date the last frame was simulated up to
+   */
+  public long getDate() {
+    return prevDate;
+  }
+
+  /**
+   * @return the number of frames simulated
+   */
+  public int getFrame() {
+    return decaySteps;
+  }
+
+  /**
+   * @return the name of the physics engine in use
+   */
+  public String getPhysicsEngineName() {
+    return physicsEngineSelection;
+  }
+
+  /**
+   * Asks for the next (or previous) physics engine to be used from the next frame on.
+   */
+  public void requestPhysicsEngineSwitch(boolean direction) {
+    toggleDirection = direction;
+    wantToToggle = true;
+  }
+
+  /**
+   * @return the file the checkpoint of the simulation at a date is kept in
+   */
+  private File checkpointFile(long date) {
+    return new File(checkpointDir, "checkpoint-" + date + ".gz");
+  }
+
+  /**
+   * @return the latest checkpoint at or before date, or null if there is none
+   */
+  private File findCheckpoint(long date) {
+    String[] names = checkpointDir.list();
+    if (names == null)
+      return null;
+    File latest = null;
+    long latestDate = Long.MIN_VALUE;
+    for (String name : names) {
+      if (!name.startsWith("checkpoint-") || !name.endsWith(".gz"))
+        continue;
+      long checkpointDate;
+      try {
+        checkpointDate = Long.parseLong(name.substring("checkpoint-".length(), name.length() - ".gz".length()));
+      } catch (NumberFormatException e) {
+        continue;
+      }
+      if (checkpointDate <= date && (latest == null || checkpointDate > latestDate)) {
+        latest = new File(checkpointDir, name);
+        latestDate = checkpointDate;
+      }
+    }
+    return latest;
+  }
+
+  /**
+   * Saves the whole simulation as it is after this frame, before the
+   * generators are reseeded.  The file only appears once it is complete, so
+   * a crash while writing leaves the previous checkpoints usable.
+   */
+  private void writeCheckpoint() {
+    File file = checkpointFile(prevDate);
+    File partial = new File(checkpointDir, file.getName() + ".part");
+    checkpointDir.mkdirs();
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(partial), 1 << 16)));
+      try {
+        writeState(out);
+      } finally {
+        out.close();
+      }
+      Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      System.out.println("Couldn't write checkpoint " + file + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Restores the simulation saved in a checkpoint, into an engine that has
+   * not started yet.
+   */
+  private void readCheckpoint(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), 1 << 16)));
+    try {
+      readState(in);
+    } finally {
+      in.close();
+    }
+    reseed(decaySteps);
+  }
+
+  private void writeState(DataOutputStream out) throws IOException {
+    out.writeInt(CHECKPOINT_VERSION);
+    out.writeLong(randomSeed);
+    out.writeLong(UPDATE_DELTA);
+    out.writeLong(prevDate);
+    out.writeInt(decaySteps);
+    out.writeInt(maxTouches);
+    out.writeUTF(physicsEngineSelection);
+
+    // The loader may be interning names meanwhile; ids in use are all below these
+    int authors = authorNames.size();
+    int paths = pathNames.size();
+    writeNames(out, authorNames, authors);
+    writeNames(out, pathNames, paths);
+    fileStore.write(out, paths);
+    personStore.write(out, authors);
+    buriedNodes.write(out);
+    buriedPeople.write(out);
+
+    out.writeInt(nodeCount);
+    for (FileNode n : nodes) {
+      if (n != null) {
+        out.writeInt(n.id);
+        out.writeInt(n.touches);
+        out.writeInt(n.nodeHue);
+        out.writeInt(n.lastEditor == null ? -1 : n.lastEditor.id);
+      }
+    }
+    out.writeInt(peopleCount);
+    for (PersonNode p : people) {
+      if (p != null) {
+        out.writeInt(p.id);
+        out.writeInt(p.touches);
+        out.writeInt(p.flavor);
+        out.writeInt(p.colorCount);
+        out.writeInt(p.editing.size());
+        for (FileNode n : p.editing)
+          out.writeInt(n == null ? -1 : n.id);
+      }
+    }
+    // The physics engines go through the living lists in order
+    out.writeInt(livingNodes.size());
+    for (FileNode n : livingNodes)
+      out.writeInt(n.id);
+    out.writeInt(livingPeople.size());
+    for (PersonNode p : livingPeople)
+      out.writeInt(p.id);
+    out.writeInt(awakeNodes.size());
+    for (FileNode n : awakeNodes)
+      out.writeInt(n.id);
+    out.writeInt(awakePeople.size());
+    for (PersonNode p : awakePeople)
+      out.writeInt(p.id);
+    out.writeInt(edges.size());
+    for (Edge edge : livingEdges)
+      writeEdge(out, edge);
+    for (Edge edge : edges.values()) {
+      if (!edge.living)
+        writeEdge(out, edge);
+    }
+
+    out.writeInt(history.size());
+    for (ColorBins cb : history) {
+      out.writeInt(cb.num);
+      out.writeInt(cb.colorList.length);
+      for (int c : cb.colorList)
+        out.writeInt(c);
+    }
+  }
+
+  private static void writeNames(DataOutputStream out, StringTable names, int count) throws IOException {
+    out.writeInt(count);
+    for (int i = 0; i < count; i++)
+      out.writeUTF(names.get(i));
+  }
+
+  private static void writeEdge(DataOutputStream out, Edge edge) throws IOException {
+    out.writeInt(edge.nodeFrom.id);
+    out.writeInt(edge.nodeTo.id);
+    out.writeInt(edge.freshenedAt());
+    out.writeBoolean(edge.living);
+  }
+
+  private void readState(DataInputStream in) throws IOException {
+    if (in.readInt() != CHECKPOINT_VERSION)
+      throw new IOException("unknown checkpoint version");
+    if (in.readLong() != randomSeed || in.readLong() != UPDATE_DELTA)
+      throw new IOException("written with another RandomSeed or FramesPerDay");
+    prevDate = in.readLong();
+    decaySteps = in.readInt();
+    maxTouches = in.readInt();
+    String engineName = in.readUTF();
+    for (peConfig p : mPhysicsEngineChoices) {
+      if (p.name.equals(engineName)) {
+        mPhysicsEngine = p.pe;
+        physicsEngineSelection = p.name;
+      }
+    }
+
+    readNames(in, authorNames);
+    readNames(in, pathNames);
+    fileStore.read(in);
+    personStore.read(in);
+    buriedNodes.read(in);
+    buriedPeople.read(in);
+
+    int[] lastEditors = new int[pathNames.size()];
+    nodeCount = in.readInt();
+    nodes = new FileNode[Math.max(nodes.length, pathNames.size())];
+    for (int i = 0; i < nodeCount; i++) {
+      FileNode n = new FileNode();
+      n.id = in.readInt();
+      n.name = pathNames.get(n.id);
+      n.touches = in.readInt();
+      n.nodeHue = in.readInt();
+      lastEditors[n.id] = in.readInt();
+      nodes[n.id] = n;
+    }
+    peopleCount = in.readInt();
+    people = new PersonNode[Math.max(people.length, authorNames.size())];
+    for (int i = 0; i < peopleCount; i++) {
+      PersonNode p = new PersonNode();
+      p.id = in.readInt();
+      p.name = authorNames.get(p.id);
+      p.touches = in.readInt();
+      p.flavor = in.readInt();
+      p.colorCount = in.readInt();
+      int editing = in.readInt();
+      for (int j = 0; j < editing; j++) {
+        int id = in.readInt();
+        if (id < 0) {
+          p.editing.add(null);
+          p.editingHoles.free(j);
+        } else {
+          p.editing.add(nodes[id]);
+          nodes[id].editingSlot = j;
+        }
+      }
+      people[p.id] = p;
+    }
+    for (FileNode n : nodes) {
+      if (n != null && lastEditors[n.id] >= 0)
+        n.lastEditor = people[lastEditors[n.id]];
+    }
+
+    int living = in.readInt();
+    for (int i = 0; i < living; i++)
+      restoreLiving(nodes[in.readInt()], livingNodes);
+    living = in.readInt();
+    for (int i = 0; i < living; i++)
+      restoreLiving(people[in.readInt()], livingPeople);
+    int awake = in.readInt();
+    for (int i = 0; i < awake; i++) {
+      FileNode n = nodes[in.readInt()];
+      if (SLEEP_SPEED > 0)
+        awakeNodes.add(n);
+    }
+    awake = in.readInt();
+    for (int i = 0; i < awake; i++) {
+      PersonNode p = people[in.readInt()];
+      if (SLEEP_SPEED > 0)
+        awakePeople.add(p);
+    }
+    if (evictions != null) {
+      for (FileNode n : nodes) {
+        if (n != null && !n.living)
+          evictions.schedule(n, n.freshenedAt() + evictionHorizon);
+      }
+      for (PersonNode p : people) {
+        if (p != null && !p.living)
+          evictions.schedule(p, p.freshenedAt() + evictionHorizon);
+      }
+    }
+    int edgeCount = in.readInt();
+    for (int i = 0; i < edgeCount; i++) {
+      Edge edge = new Edge();
+      edge.init(nodes[in.readInt()], people[in.readInt()]);
+      edge.setFreshenedAt(in.readInt());
+      edges.put(edge.nodeFrom.id, edge.nodeTo.id, edge);
+      if (in.readBoolean())
+        restoreLiving(edge, livingEdges);
+    }
+
+    int bins = in.readInt();
+    for (int i = 0; i < bins; i++) {
+      ColorBins cb = new ColorBins();
+      cb.num = in.readInt();
+      cb.colorList = new int[in.readInt()];
+      for (int j = 0; j < cb.colorList.length; j++)
+        cb.colorList[j] = in.readInt();
+      history.add(cb);
+    }
+  }
+
+  private static void readNames(DataInputStream in, StringTable names) throws IOException {
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      if (names.intern(in.readUTF()) != i)
+        throw new IOException("duplicate name");
+    }
+  }
+
+  /**
+   * Puts something back in its living list, as it was when saved: its life
+   * may have run out this very step, which expireDead() takes care of.
+   */
+  private <T extends Drawable> void restoreLiving(T thing, List<T> living) {
+    thing.living = true;
+    living.add(thing);
+    int expiry = thing.expiryStep();
+    if (expiry >= 0)
+      expiries.schedule(thing, expiry);
+  }
+
+  /**
+   * Load a colormap
+   */
+  public void initColors() {
+    colorAssigner = new ColorAssigner();
+    int i = 1;
+    String property;
+    while ((property = cfg.getColorAssignProperty(i)) != null) {
+      ColorTest ct = new ColorTest();
+      ct.loadProperty(property);
+      colorAssigner.addRule(ct);
+      i++;
+    }
+    // Load the default.
+    ColorTest ct = new ColorTest();
+    ct.loadProperty(CodeSwarmConfig.DEFAULT_COLOR_ASSIGN);
+    colorAssigner.addRule(ct);
+  }
+
+  /**
+   * Copies what code_swarm draws of the current frame into a snapshot.
+   * Only reads the simulation, so it goes the same whether or not it is
+   * called.
+   * @param withEdges whether to copy the edges
+   * @param withPopular whether to find the most touched files
+   */
+  public void capture(FrameSnapshot frame, boolean withEdges, boolean withPopular) {
+    frame.clear();
+    frame.date = prevDate;
+    frame.maxTouches = maxTouches;
+    frame.nodeCount = nodeCount;
+    frame.peopleCount = peopleCount;
+    frame.evictedNodes = buriedNodes.size();
+    frame.evictedPeople = buriedPeople.size();
+    frame.asleepNodes = livingNodes.size() - awakeNodes.size();
+    frame.asleepPeople = livingPeople.size() - awakePeople.size();
+    frame.updateDuration = lastUpdateDuration;
+    frame.newestAppendTime = newestAppendTime;
+    frame.history.addAll(history);
+
+    if (withEdges) {
+      for (Edge edge : edges.values()) {
+        frame.addEdge(edge.nodeFrom.x(), edge.nodeFrom.y(), edge.nodeTo.x(), edge.nodeTo.y(), edge.life());
+      }
+    }
+    for (PersonNode p : getLivingPeople()) {
+      if (p.isAlive())
+        frame.addPerson(p.x(), p.y(), p.life(), p.flavor, p.name, p.id);
+    }
+    for (FileNode n : getLivingNodes()) {
+      if (n.isAlive())
+        frame.addFile(n.x(), n.y(), n.lastX(), n.lastY(), n.life(), n.nodeHue, n.touches);
+    }
+    if (withPopular) {
+      findPopular(frame);
+    }
+
+    frame.last = isFinished();
+  }
+
+  /**
+   * Finds the ten most touched files for code_swarm's drawPopular().
+   */
+  private void findPopular(FrameSnapshot frame) {
+    // Evicted files still count, with the touches kept in the graveyard
+    int[] top = new int[10];
+    int[] topTouches = new int[10];
+    int count = 0;
+    int ids = Math.max(nodes.length, buriedNodes.capacity());
+    for (int n = 0; n < ids; n++) {
+      FileNode fn = n < nodes.length ? nodes[n] : null;
+      int touches = fn != null ? fn.touches : buriedNodes.touches(n);
+      if (touches > 0 && touches >= (maxTouches * 0.5f)) {
+        // Insertion Sort, after those with as many touches
+        int j = count;
+        while (j > 0 && topTouches[j - 1] < touches)
+          j--;
+        if (j < top.length) {
+          int moved = Math.min(count, top.length - 1) - j;
+          System.arraycopy(top, j, top, j + 1, moved);
+          System.arraycopy(topTouches, j, topTouches, j + 1, moved);
+          top[j] = n;
+          topTouches[j] = touches;
+          count = Math.min(count + 1, top.length);
+        }
+      }
+    }
+
+    for (int i = 0; i < count; i++) {
+      frame.addPopular(pathNames.get(top[i]), topTouches[i]);
+    }
+  }
+
+  /**
+   * @param name
+   * @return physics engine instance
+   */
+  @SuppressWarnings("unchecked")
+  public PhysicsEngine getPhysicsEngine(String name) {
+    PhysicsEngine pe = null;
+    try {
+      Class<PhysicsEngine> c = (Class<PhysicsEngine>)Class.forName(name);
+      Constructor<PhysicsEngine> peConstructor = c.getConstructor();
+      pe = peConstructor.newInstance();
+    } catch (Exception e) {
+      e.printStackTrace();
+      System.exit(1);
+    }
+
+    return pe;
+  }
+
+  /**
+   * @return list of people whose life is > 0
+   */
+  public List<PersonNode> getLivingPeople() {
+    return Collections.unmodifiableList (livingPeople);
+  }
+
+  /**
+   * @return list of edges whose life is > 0
+   */
+  public List<Edge> getLivingEdges() {
+    return Collections.unmodifiableList (livingEdges);
+  }
+
+  /**
+   * @return list of file nodes whose life is > 0
+   */
+  public List<FileNode> getLivingNodes() {
+    return Collections.unmodifiableList (livingNodes);
+  }
+
+  /**
+   * @return the number of decay steps it takes life to run out, or -1 if it never does
+   */
+  static int lifetime(int lifeInit, int lifeDecrement) {
+    if (lifeDecrement == 0)
+      return lifeInit > 0 ? -1 : 0;
+    return (lifeInit - lifeDecrement - 1) / -lifeDecrement;
+  }
+
+  /**
+   * Puts something that was just created or freshened into its living list
+   * and schedules its expiry.
+   */
+  private <T extends Drawable> void keepAlive(T thing, List<T> living) {
+    if (!thing.isAlive())
+      return;
+    if (!thing.living) {
+      thing.living = true;
+      living.add(thing);
+      if (SLEEP_SPEED > 0 && thing instanceof Node)
+        ((Node) thing).keepAwake();
+    }
+    int expiry = thing.expiryStep();
+    if (expiry >= 0)
+      expiries.schedule(thing, expiry);
+  }
+
+  /**
+   * Takes everything whose life runs out at the current decay step out of
+   * the living lists.  Entries for things freshened since they were
+   * scheduled are stale and skipped.
+   */
+  private void expireDead() {
+    expiries.drain(decaySteps, expiring);
+    if (expiring.isEmpty())
+      return;
+    for (Drawable thing : expiring) {
+      if (thing.living && thing.expiryStep() == decaySteps) {
+        thing.living = false;
+        if (thing instanceof FileNode)
+          ((FileNode) thing).leaveEditor();
+        if (thing instanceof Edge) {
+          // A dead edge has nothing worth keeping; a new one is the same as a freshened one
+          Edge edge = (Edge) thing;
+          edges.remove(edge.nodeFrom.id, edge.nodeTo.id);
+          edge.nodeFrom = null;
+          edge.nodeTo = null;
+          recycle(edgePool, edge);
+        } else if (evictions != null) {
+          evictions.schedule((Node) thing, thing.freshenedAt() + evictionHorizon);
+        }
+      }
+    }
+    expiring.clear();
+    removeExpired(livingEdges);
+    removeExpired(livingNodes);
+    removeExpired(livingPeople);
+    if (SLEEP_SPEED > 0) {
+      removeExpired(awakeNodes);
+      removeExpired(awakePeople);
+    }
+  }
+
+  /**
+   * Drops the files and people whose eviction horizon is reached without
+   * their having been freshened, keeping in the graveyard what it takes to
+   * bring them back as they were; their position stays in the entity store.
+   * By then every edge to them is dead, and so is every file a person was
+   * the last editor of.
+   */
+  private void evictForgotten() {
+    if (evictions == null)
+      return;
+    evictions.drain(decaySteps, evicting);
+    for (Node node : evicting) {
+      if (node.living || node.freshenedAt() + evictionHorizon != decaySteps)
+        continue;
+      if (node instanceof FileNode) {
+        FileNode n = (FileNode) node;
+        buriedNodes.bury(n.id, n.touches, 0, 0);
+        nodes[n.id] = null;
+        nodeCount--;
+        recycle(nodePool, n);
+      } else {
+        PersonNode p = (PersonNode) node;
+        buriedPeople.bury(p.id, p.touches, p.flavor, p.colorCount);
+        people[p.id] = null;
+        peopleCount--;
+        recycle(personPool, p);
+      }
+    }
+    evicting.clear();
+  }
+
+  private static <T> void recycle(List<T> pool, T thing) {
+    if (pool.size() < POOL_LIMIT)
+      pool.add(thing);
+  }
+
+  /**
+   * @return a node for a file not in memory, new or back from the graveyard
+   */
+  private FileNode spawnNode(int pathId) {
+    FileNode n = nodePool.isEmpty() ? new FileNode() : nodePool.remove(nodePool.size() - 1);
+    n.init(pathId);
+    if (buriedNodes.isBuried(pathId)) {
+      n.touches = buriedNodes.touches(pathId);
+      buriedNodes.exhume(pathId);
+      n.freshen();
+    } else {
+      n.place();
+    }
+    return n;
+  }
+
+  /**
+   * @return a node for a person not in memory, new or back from the graveyard
+   */
+  private PersonNode spawnPerson(int authorId) {
+    PersonNode p = personPool.isEmpty() ? new PersonNode() : personPool.remove(personPool.size() - 1);
+    p.init(authorId);
+    if (buriedPeople.isBuried(authorId)) {
+      p.touches = buriedPeople.touches(authorId);
+      p.flavor = buriedPeople.color(authorId);
+      p.colorCount = buriedPeople.colorCount(authorId);
+      buriedPeople.exhume(authorId);
+      p.freshen();
+    } else {
+      p.place();
+    }
+    return p;
+  }
+
+  private Edge spawnEdge(FileNode from, PersonNode to) {
+    Edge e = edgePool.isEmpty() ? new Edge() : edgePool.remove(edgePool.size() - 1);
+    e.init(from, to);
+    return e;
+  }
+
+  private static <T extends Drawable> void removeExpired(List<T> living) {
+    int kept = 0;
+    for (int i = 0; i < living.size(); i++) {
+      T thing = living.get(i);
+      if (thing.living)
+        living.set(kept++, thing);
+    }
+    living.subList(kept, living.size()).clear();
+  }
+
+  /**
+   *  Update the particle positions
+   */
+  public void update() {
+    long start = System.currentTimeMillis();
+    // Create a new histogram line
+    ColorBins cb = new ColorBins();
+    history.add(cb);
+
+    nextDate = prevDate + UPDATE_DELTA;
+    newestAppendTime = 0;
+    if (followInput) {
+      // Replay history quickly, but never run ahead of the wall clock
+      nextDate = Math.max(prevDate, Math.min(nextDate, System.currentTimeMillis()));
+    }
+
+    while (true) {
+      if (currentSlice == null || sliceIndex == currentSlice.size()) {
+        currentSlice = nextSlice();
+        sliceIndex = 0;
+        if (currentSlice == null)
+          break;
+      }
+      if (currentSlice.getDate(sliceIndex) >= nextDate)
+        break;
+      int pathId = currentSlice.getPathId(sliceIndex);
+      int authorId = currentSlice.getAuthorId(sliceIndex);
+      sliceIndex++;
+
+      newestAppendTime = Math.max(newestAppendTime, currentSlice.getAppendTime());
+
+      FileNode n = findNode(pathId);
+      if (n == null) {
+        n = spawnNode(pathId);
+        if (n.id >= nodes.length)
+          nodes = Arrays.copyOf(nodes, Math.max(n.id + 1, nodes.length * 2));
+        nodes[n.id] = n;
+        nodeCount++;
+      } else {
+        n.freshen();
+      }
+      keepAlive(n, livingNodes);
+
+      // add to histogram
+      cb.add(n.nodeHue);
+
+      PersonNode p = findPerson(authorId);
+      if (p == null) {
+        p = spawnPerson(authorId);
+        if (p.id >= people.length)
+          people = Arrays.copyOf(people, Math.max(p.id + 1, people.length * 2));
+        people[p.id] = p;
+        peopleCount++;
+      } else {
+        p.freshen();
+      }
+      keepAlive(p, livingPeople);
+      p.addColor(n.nodeHue);
+
+      Edge ped = findEdge(n, p);
+      if (ped == null) {
+        ped = spawnEdge(n, p);
+        edges.put(n.id, p.id, ped);
+      } else
+        ped.freshen();
+      keepAlive(ped, livingEdges);
+
+      n.setEditor(p);
+
+      /*
+       * if ( currentEvent.date.equals( prevDate ) ) { Edge e = findEdge( n, prevNode
+       * ); if ( e == null ) { e = new Edge( n, prevNode ); edges.add( e ); } else {
+       * e.freshen(); } }
+       */
+
+      // prevDate = currentEvent.date;
+      prevNode = n;
+    }
+
+    prevDate = nextDate;
+
+    // sort colorbins
+    cb.sort();
+
+    // restrict history to drawable area
+    while (history.size() > 320)
+      history.remove();
+
+    // Do not allow toggle Physics Engine yet.
+    safeToToggle = false;
+
+	/*
+	We cache liveness information at the beginning on the update cycle.
+
+	Have have to do it this way as the physics engine onRelax methods
+	loop on all living elements and filtering this for every element
+	gets too painfull slow on logs with over 100.000 entries.
+	The caches are only touched for things freshened or expiring now,
+	so a frame costs nothing for what died long ago.
+	*/
+
+    expireDead();
+    evictForgotten();
+
+    // Init frame:
+    mPhysicsEngine.initializeFrame();
+
+    // update velocity
+    mPhysicsEngine.relaxEdges(getLivingEdges(), 0, getLivingEdges().size());
+    moveNodes(false, false);
+    moveNodes(true, false);
+
+    // update position
+    mPhysicsEngine.updateEdges(getLivingEdges(), 0, getLivingEdges().size());
+    moveNodes(false, true);
+    moveNodes(true, true);
+
+    // Everything ages by one step
+    decaySteps++;
+
+    // Only what is still awake moves in the next frame
+    settle();
+
+    // Finalize frame:
+    mPhysicsEngine.finalizeFrame();
+
+    safeToToggle = true;
+    if (wantToToggle == true) {
+      switchPhysicsEngine(toggleDirection);
+    }
+    lastUpdateDuration = System.currentTimeMillis() - start;
+  }
+
+  /**
+   * Relaxes or updates all the awake files or people, on physicsPool if
+   * there is one and the engine allows it.  Updates go in ranges of
+   * PHYSICS_GRAIN nodes, so that the nodes are still in cache when
+   * settleRange() looks at how far they moved.
+   */
+  private void moveNodes(boolean people, boolean update) {
+    int count = people ? awakePeople.size() : awakeNodes.size();
+    if (update && SLEEP_SPEED > 0) {
+      if (people && peopleFell.length < count)
+        peopleFell = new boolean[Math.max(count, 2 * peopleFell.length)];
+      else if (!people && nodesFell.length < count)
+        nodesFell = new boolean[Math.max(count, 2 * nodesFell.length)];
+    }
+    if (physicsPool != null && mPhysicsEngine.isParallel())
+      physicsPool.invoke(new PhysicsTask(people, update, 0, count));
+    else if (!update)
+      moveNodes(people, update, 0, count);
+    else {
+      for (int from = 0; from < count; from += PHYSICS_GRAIN)
+        moveNodes(people, update, from, Math.min(count, from + PHYSICS_GRAIN));
+    }
+  }
+
+  /**
+   * Relaxes or updates a range of the awake files or people.
+   */
+  private void moveNodes(boolean people, boolean update, int from, int to) {
+    if (!people) {
+      if (update) {
+        mPhysicsEngine.updateFiles(awakeNodes, from, to);
+        settleRange(awakeNodes, nodesFell, from, to);
+      } else
+        mPhysicsEngine.relaxFiles(awakeNodes, from, to);
+    } else if (!update) {
+      mPhysicsEngine.relaxPeople(awakePeople, from, to);
+    } else {
+      mPhysicsEngine.updatePeople(awakePeople, from, to);
+      // Keep people within the area, clear of the borders
+      for (int i = from; i < to; i++) {
+        PersonNode person = awakePeople.get(i);
+        person.moveTo(Math.max(50, Math.min(width-50,  person.x())),
+                      Math.max(45, Math.min(height-15, person.y())));
+      }
+      settleRange(awakePeople, peopleFell, from, to);
+    }
+  }
+
+  /**
+   * Counts how long each awake node in a range has been nearly still, from
+   * how far it just moved, and stops those still for SLEEP_FRAMES frames.
+   * @param fell set at the index of each node that fell asleep
+   */
+  private void settleRange(List<? extends Node> awake, boolean[] fell, int from, int to) {
+    if (SLEEP_SPEED <= 0)
+      return;
+    float speed2 = SLEEP_SPEED * SLEEP_SPEED;
+    for (int i = from; i < to; i++) {
+      Node node = awake.get(i);
+      EntityStore store = node.store;
+      int still = 0;
+      if (store.speed2(node.id) < speed2)
+        still = store.still(node.id) + 1;
+      store.setStill(node.id, still);
+      fell[i] = still >= SLEEP_FRAMES;
+      if (fell[i])
+        store.stop(node.id);
+    }
+  }
+
+  /**
+   * Takes the files and people that fell asleep out of the awake lists.
+   * The people who moved then wake the files they edit and the people near
+   * enough to feel them, from the next frame on.
+   */
+  private void settle() {
+    if (SLEEP_SPEED <= 0)
+      return;
+    int kept = 0;
+    for (int i = 0; i < awakeNodes.size(); i++) {
+      if (!nodesFell[i])
+        awakeNodes.set(kept++, awakeNodes.get(i));
+    }
+    awakeNodes.subList(kept, awakeNodes.size()).clear();
+    kept = 0;
+    movedPeople.clear();
+    for (int i = 0; i < awakePeople.size(); i++) {
+      PersonNode p = awakePeople.get(i);
+      if (!peopleFell[i]) {
+        awakePeople.set(kept++, p);
+        if (personStore.still(p.id) == 0)
+          movedPeople.add(p);
+      }
+    }
+    awakePeople.subList(kept, awakePeople.size()).clear();
+
+    for (int i = 0; i < movedPeople.size(); i++) {
+      List<FileNode> editing = movedPeople.get(i).editing;
+      for (int j = 0; j < editing.size(); j++) {
+        FileNode file = editing.get(j);
+        if (file != null)
+          file.wake();
+      }
+    }
+    wakeNear(mPhysicsEngine.wakeDistance());
+  }
+
+  /**
+   * Wakes the sleeping people within distance of a person who moved, in
+   * order of id, so that the awake list comes out the same after a resume.
+   */
+  private void wakeNear(float distance) {
+    if (distance <= 0 || movedPeople.isEmpty() || awakePeople.size() == livingPeople.size())
+      return;
+    // Synced anew, as this runs after the step is counted
+    SpatialGrid grid = mPhysicsEngine.personGrid();
+    int count = 0;
+    for (int i = 0; i < movedPeople.size(); i++) {
+      PersonNode p = movedPeople.get(i);
+      int near = grid.near(p.x(), p.y(), distance);
+      if (count + near > waking.length)
+        waking = Arrays.copyOf(waking, Math.max(count + near, 2 * waking.length));
+      for (int j = 0; j < near; j++) {
+        int id = grid.result(j);
+        if (people[id].asleep())
+          waking[count++] = id;
+      }
+    }
+    Arrays.sort(waking, 0, count);
+    for (int i = 0; i < count; i++)
+      people[waking[i]].wake();
+  }
+
+  /**
+   * Relaxes or updates a range of living files or people on physicsPool,
+   * splitting it in halves down to PHYSICS_GRAIN nodes.  Only for engines
+   * whose isParallel() is true, so no two nodes move the same one.
+   */
+  private class PhysicsTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final boolean people;
+    private final boolean update;
+    private final int from;
+    private final int to;
+
+    PhysicsTask(boolean people, boolean update, int from, int to) {
+      this.people = people;
+      this.update = update;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute() {
+      if (to - from > PHYSICS_GRAIN) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new PhysicsTask(people, update, from, middle),
+                  new PhysicsTask(people, update, middle, to));
+        return;
+      }
+      moveNodes(people, update, from, to);
+    }
+  }
+
+  /**
+   * Searches for the FileNode with a given path id
+   * @param id
+   * @return FileNode with matching id or null if not found.
+   */
+  public FileNode findNode(int id) {
+    return id < nodes.length ? nodes[id] : null;
+  }
+
+  /**
+   * Searches for the Edge connecting the given nodes
+   * @param n1 From
+   * @param n2 To
+   * @return Edge connecting n1 to n2 or null if not found
+   */
+  public Edge findEdge(FileNode n1, PersonNode n2) {
+    return edges.get(n1.id, n2.id);
+  }
+
+  /**
+   * Searches for the PersonNode with a given author id.
+   * @param id
+   * @return PersonNode for given id or null if not found.
+   */
+  public PersonNode findPerson(int id) {
+    return id < people.length ? people[id] : null;
+  }
+
+  /**
+   *  Load the standard event-formatted file.
+   *  @param filename
+   */
+  public void loadRepEvents(String filename) {
+    if (userConfigFilename  != null) {
+      String parentPath = new File(userConfigFilename).getAbsoluteFile().getParentFile().getAbsolutePath();
+      File fileInConfigDir = new File(parentPath, filename);
+      if (fileInConfigDir.exists())
+        filename = fileInConfigDir.getAbsolutePath();
+    }
+
+    final String fullFilename = filename;
+    Runnable eventLoader;
+    try {
+      if (followInput) {
+        // Never finishes, so it gets its own thread rather than a background one
+        Thread follower = new Thread(new FollowQueueLoader(fullFilename, eventSlices), "follow " + fullFilename);
+        follower.setDaemon(true);
+        follower.start();
+        return;
+      }
+      if (new File(fullFilename).isDirectory())
+        eventLoader = new GitQueueLoader(fullFilename, eventSlices);
+      else if (BinaryEventFormat.isBinaryEventFile(fullFilename))
+        eventLoader = new BinaryQueueLoader(fullFilename, eventSlices, isInputSorted);
+      else
+        eventLoader = new XMLQueueLoader(fullFilename, eventSlices, isInputSorted);
+    } catch (IOException e) {
+      System.out.println("Couldn't open input file " + fullFilename);
+      e.printStackTrace();
+      System.exit(1);
+      return;
+    }
+
+    Thread loader = new Thread(eventLoader, "load " + fullFilename);
+    loader.setDaemon(true);
+    loader.start();
+  }
+
+  /**
+   * Takes the next slice of events, waiting for the loader unless the
+   * input is being followed.
+   * @return the next slice, or null if there is none (yet)
+   */
+  private EventSlice nextSlice() {
+    if (followInput)
+      return eventSlices.poll();
+    try {
+      return eventSlices.take();
+    } catch (InterruptedException e) {
+      System.out.println("Interrupted while fetching events from the loader");
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Method to switch between Physics Engines
+   * @param direction Indicates whether or not to go left or right on the list
+   */
+  public void switchPhysicsEngine(boolean direction) {
+    if (mPhysicsEngineChoices.size() > 1 && safeToToggle) {
+      boolean found = false;
+      for (int i = 0; i < mPhysicsEngineChoices.size() && !found; i++) {
+        if (mPhysicsEngineChoices.get(i).pe == mPhysicsEngine) {
+          found = true;
+          wantToToggle = false;
+          if (direction == true) {
+            if ((i+1) < mPhysicsEngineChoices.size()) {
+              mPhysicsEngine=mPhysicsEngineChoices.get(i+1).pe;
+              physicsEngineSelection=mPhysicsEngineChoices.get(i+1).name;
+            } else {
+              mPhysicsEngine=mPhysicsEngineChoices.get(0).pe;
+              physicsEngineSelection=mPhysicsEngineChoices.get(0).name;
+            }
+          } else {
+            if ((i-1) >= 0) {
+              mPhysicsEngine=mPhysicsEngineChoices.get(i-1).pe;
+              physicsEngineSelection=mPhysicsEngineChoices.get(i-1).name;
+            } else {
+              mPhysicsEngine=mPhysicsEngineChoices.get(mPhysicsEngineChoices.size()-1).pe;
+              physicsEngineSelection=mPhysicsEngineChoices.get(mPhysicsEngineChoices.size()-1).name;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Ensures that input is sorted when we're told it is.
+   * @param eventDate date of the event just read
+   */
+  private void checkSorted(long eventDate) {
+    //It's difficult for the user to tell that they're missing events,
+    //so we should crash in this case
+    if (eventDate < maximumDateSeenSoFar){
+      System.out.println("Input not sorted, you must set IsInputSorted to false in your config file");
+      System.exit(1);
+    }
+    else
+      maximumDateSeenSoFar = eventDate;
+  }
+
+  /**
+   * Maps the ids of the names a loader read to ids in the engine's table,
+   * interning each name there the first time it is asked for.
+   */
+  private static class WindowIds {
+    private final StringTable read;
+    private final StringTable names;
+    private int[] ids = new int[0];
+
+    WindowIds(StringTable read, StringTable names) {
+      this.read = read;
+      this.names = names;
+    }
+
+    int get(int readId) {
+      if (read == names)
+        return readId;
+      if (readId >= ids.length) {
+        int from = ids.length;
+        ids = Arrays.copyOf(ids, Math.max(readId + 1, 2 * ids.length));
+        Arrays.fill(ids, from, ids.length, -1);
+      }
+      if (ids[readId] < 0)
+        ids[readId] = names.intern(read.get(readId));
+      return ids[readId];
+    }
+  }
+
+  /**
+   * Base class for the input loaders.
+   *
+   * Events read from sorted input go straight into the frame slicer.  Unsorted
+   * input is passed through an external merge sort first, and the slicer
+   * is fed from the merged runs once the whole input has been read.
+   */
+  private abstract class QueueLoader implements Runnable {
+    protected final String fullFilename;
+    protected final FrameSlicer slicer;
+    protected final boolean isSorted;
+    private ExternalEventSorter sorter = null;
+    private int authorsPrefetched = 0;
+    // The loaders intern the names they read here.  With a window of history
+    // set, a name only gets its id in authorNames or pathNames from the first
+    // event in the window that uses it, so the ids, and with them the layout,
+    // don't depend on whether the input could be seeked or had to be filtered.
+    protected final StringTable readAuthors;
+    protected final StringTable readPaths;
+    private final WindowIds authorIds;
+    private final WindowIds pathIds;
+
+    QueueLoader(String fullFilename, SliceRing<EventSlice> ring, boolean isSorted) {
+      this.fullFilename = fullFilename;
+      this.slicer = new FrameSlicer(ring, UPDATE_DELTA, MAX_SLICE_EVENTS);
+      this.isSorted = isSorted;
+      boolean windowed = START_DATE != Long.MIN_VALUE || END_DATE != Long.MAX_VALUE;
+      readAuthors = windowed ? new StringTable() : authorNames;
+      readPaths = windowed ? new StringTable() : pathNames;
+      authorIds = new WindowIds(readAuthors, authorNames);
+      pathIds = new WindowIds(readPaths, pathNames);
+      if (!isSorted) {
+        int sortThreads = Math.min(Runtime.getRuntime().availableProcessors(), maxBackgroundThreads);
+        sorter = new ExternalEventSorter(SORT_RUN_SIZE, Math.max(1, sortThreads));
+      }
+    }
+
+    /**
+     * Reads the whole input, calling addEvent() for each event.
+     */
+    protected abstract void load() throws Exception;
+
+    protected void prefetchAvatar(int authorId) {
+      //We want to pre-fetch images to minimize lag as images are loaded
+      if (avatarFetcher == null)
+        return;
+      while (authorId >= authorsPrefetched)
+        avatarFetcher.fetchUserImage(authorNames.get(authorsPrefetched++));
+    }
+
+    /**
+     * Looks up where to start reading for the configured window of history.
+     * @return the position to start at, or -1 to read the whole input
+     */
+    protected long indexedStart() {
+      if (START_DATE == Long.MIN_VALUE && END_DATE == Long.MAX_VALUE)
+        return -1;
+      if (CompressedInput.isCompressed(fullFilename))
+        return -1;
+      try {
+        return EventIndex.open(fullFilename, INDEX_BUCKET_LENGTH).find(START_DATE);
+      } catch (IOException e) {
+        System.out.println("Couldn't index " + fullFilename + ", reading all of it: " + e.getMessage());
+        return -1;
+      }
+    }
+
+    /**
+     * @param authorId id in readAuthors
+     * @param pathId id in readPaths
+     */
+    protected void addEvent(long date, int authorId, int pathId) throws InterruptedException {
+      if (date < START_DATE || date >= END_DATE)
+        return;
+      authorId = authorIds.get(authorId);
+      pathId = pathIds.get(pathId);
+      prefetchAvatar(authorId);
+
+      if (isSorted) {
+        checkSorted(date);
+        slicer.add(date, authorId, pathId);
+      } else {
+        sorter.add(date, authorId, pathId);
+      }
+    }
+
+    public void run() {
+      try {
+        load();
+        if (!isSorted) {
+          EventCursor sorted = sorter.finish();
+          while (sorted.next())
+            slicer.add(sorted.getDate(), sorted.getAuthorId(), sorted.getPathId());
+          sorted.close();
+        }
+        slicer.close();
+      } catch (InterruptedException e) {
+        System.out.println("Interrupted while trying to hand over events");
+        e.printStackTrace();
+        System.exit(1);
+      } catch (Exception e) {
+        System.out.println("Error reading " + fullFilename + ":");
+        e.printStackTrace();
+        System.exit(1);
+      }
+      finishedLoading = true;
+    }
+  }
+
+  /**
+   * Reads file_events xml, with the byte-level XMLEventScanner when the
+   * input sticks to the usual dialect and with SAX otherwise.
+   */
+  private class XMLQueueLoader extends QueueLoader {
+    private long eventsToSkip = 0;
+
+    private XMLQueueLoader(String fullFilename, SliceRing<EventSlice> ring, boolean isXMLSorted) {
+      super(fullFilename, ring, isXMLSorted);
+    }
+
+    protected void load() throws Exception {
+      long start = indexedStart();
+      if (start >= 0) {
+        // Indexing checked that the events are in order, so we can stop at the end date
+        EventCursor scanner = new XMLEventScanner(EventIndex.openAt(fullFilename, start), readAuthors, readPaths);
+        try {
+          while (scanner.next() && scanner.getDate() < END_DATE)
+            addEvent(scanner.getDate(), scanner.getAuthorId(), scanner.getPathId());
+        } finally {
+          scanner.close();
+        }
+        return;
+      }
+
+      //Compressed input can't be split into byte ranges
+      if (PARSE_THREADS > 1 && !CompressedInput.isCompressed(fullFilename)) {
+        EventCursor events = new ParallelXMLEventParser(fullFilename, readAuthors, readPaths,
+                                                        PARSE_THREADS, PARSE_CHUNK_SIZE).parse();
+        while (events.next())
+          addEvent(events.getDate(), events.getAuthorId(), events.getPathId());
+        return;
+      }
+
+      EventCursor scanner = new XMLEventScanner(CompressedInput.open(fullFilename), readAuthors, readPaths);
+      try {
+        while (scanner.next())
+          addEvent(scanner.getDate(), scanner.getAuthorId(), scanner.getPathId());
+        return;
+      } catch (XMLEventScanner.UnsupportedInputException e) {
+        // SAX starts over, so skip what the scanner already delivered
+        System.out.println("Falling back to SAX parser: " + e.getMessage());
+        eventsToSkip = e.getEventsRead();
+      } finally {
+        scanner.close();
+      }
+      parseWithSAX();
+    }
+
+    private void parseWithSAX() throws Exception {
+      XMLReader reader = null;
+      try {
+        reader = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+      } catch (ParserConfigurationException e) {
+        System.out.println("Couldn't find/create an XML SAX Reader");
+        e.printStackTrace();
+        System.exit(1);
+      } catch (SAXException e) {
+        System.out.println("Couldn't find/create an XML SAX Reader");
+        e.printStackTrace();
+        System.exit(1);
+      }
+      reader.setContentHandler(new DefaultHandler(){
+        public void startElement(String uri, String localName, String name,
+            Attributes atts) throws SAXException {
+          if (name.equals("event")){
+            if (eventsToSkip > 0) {
+              eventsToSkip--;
+              return;
+            }
+            String eventFilename = atts.getValue("filename");
+            String eventDatestr = atts.getValue("date");
+            long eventDate = Long.parseLong(eventDatestr);
+
+            String eventAuthor = atts.getValue("author");
+            // int eventLinesAdded = atts.getValue( "linesadded" );
+            // int eventLinesRemoved = atts.getValue( "linesremoved" );
+
+            try {
+              addEvent(eventDate, readAuthors.intern(eventAuthor), readPaths.intern(eventFilename));
+            } catch (InterruptedException e) {
+              System.out.println("Interrupted while trying to hand over events");
+              e.printStackTrace();
+              System.exit(1);
+            }
+          }
+        }
+      });
+      ReadableByteChannel input = CompressedInput.open(fullFilename);
+      try {
+        InputSource source = new InputSource(Channels.newInputStream(input));
+        source.setSystemId(new File(fullFilename).toURI().toString());
+        reader.parse(source);
+      } finally {
+        input.close();
+      }
+    }
+  }
+
+  /**
+   * Tails an event file that is being appended to, in the file_events
+   * dialect with or without the enclosing root element.  Loading never
+   * finishes; events that arrive out of order are shown as soon as possible
+   * instead of stopping the program.
+   */
+  private class FollowQueueLoader extends QueueLoader {
+    private FollowingChannel input;
+
+    private FollowQueueLoader(String fullFilename, SliceRing<EventSlice> ring) throws IOException {
+      super(fullFilename, ring, true);
+      input = new FollowingChannel(fullFilename, followPollMillis);
+      // Show what has arrived before waiting for more, rather than at the end of its frame
+      input.setIdleHandler(new Runnable() {
+        public void run() {
+          try {
+            slicer.flush();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    }
+
+    protected void load() throws Exception {
+      EventCursor scanner = new XMLEventScanner(input, authorNames, pathNames);
+      while (scanner.next())
+        addEvent(scanner.getDate(), scanner.getAuthorId(), scanner.getPathId());
+    }
+
+    protected void addEvent(long date, int authorId, int pathId) throws InterruptedException {
+      prefetchAvatar(authorId);
+      if (date < maximumDateSeenSoFar)
+        date = maximumDateSeenSoFar;
+      else
+        maximumDateSeenSoFar = date;
+      slicer.setAppendTime(input.getLastAppendTime());
+      slicer.add(date, authorId, pathId);
+    }
+  }
+
+  /**
+   * Feeds the events of a memory-mapped binary event file into the frame slicer.
+   * The file's author and path tables are interned once and its ids are
+   * then translated with a lookup per event.
+   */
+  private class BinaryQueueLoader extends QueueLoader {
+    private final BinaryEventReader reader;
+
+    private BinaryQueueLoader(String fullFilename, SliceRing<EventSlice> ring, boolean isSorted) throws IOException {
+      super(fullFilename, ring, isSorted);
+      this.reader = new BinaryEventReader(fullFilename);
+    }
+
+    protected void load() throws Exception {
+      String[] authors = reader.getAuthors();
+      String[] paths = reader.getPaths();
+      int[] authorIds = new int[authors.length];
+      for (int i = 0; i < authors.length; i++)
+        authorIds[i] = readAuthors.intern(authors[i]);
+      int[] pathIds = new int[paths.length];
+      for (int i = 0; i < paths.length; i++)
+        pathIds[i] = readPaths.intern(paths[i]);
+
+      long start = indexedStart();
+      boolean indexed = start >= 0;
+      if (indexed)
+        reader.seek(start);
+      while (reader.next() && (!indexed || reader.getDate() < END_DATE))
+        addEvent(reader.getDate(), authorIds[reader.getAuthorId()], pathIds[reader.getPathId()]);
+      reader.close();
+    }
+  }
+
+  /**
+   * Streams the history of a local git repository straight from git log.
+   * Author dates go back and forth along the log after a rebase or a
+   * cherry-pick, so the events are always sorted, whatever IsInputSorted says.
+   */
+  private class GitQueueLoader extends QueueLoader {
+    private GitQueueLoader(String fullFilename, SliceRing<EventSlice> ring) {
+      super(fullFilename, ring, false);
+    }
+
+    protected void load() throws Exception {
+      EventCursor events = new GitLogCursor(new File(fullFilename), readAuthors, readPaths);
+      while (events.next())
+        addEvent(events.getDate(), events.getAuthorId(), events.getPathId());
+      events.close();
+    }
+  }
+
+  /**
+   * Class to associate the Physics Engine name to the
+   * Physics Engine interface
+   */
+  class peConfig {
+    protected String name;
+    protected PhysicsEngine pe;
+
+    peConfig(String n, PhysicsEngine p) {
+      name = n;
+      pe = p;
+    }
+  }
+
+
+  /**
+   * Base class for all drawable objects
+   *
+   *        Lists and implements features common to all drawable objects
+   *        Edge and Node, FileNode and PersonNode
+   */
+  abstract class Drawable {
+    final public int LIFE_INIT;
+    final public int LIFE_DECREMENT;
+    // The decay step at which life was last reset to LIFE_INIT
+    private int freshenedAt;
+    // Whether this is in its living list
+    boolean living = false;
+    /**
+     * 1) constructor(s)
+     *
+     * Init jobs common to all objects
+     */
+    Drawable(int lifeInit, int lifeDecrement) {
+      // save config vars
+      LIFE_INIT      = lifeInit;
+      LIFE_DECREMENT = lifeDecrement;
+    }
+
+    /**
+     * @return the decay step at which life was last reset to LIFE_INIT
+     */
+    int freshenedAt() {
+      return freshenedAt;
+    }
+
+    void setFreshenedAt(int step) {
+      freshenedAt = step;
+    }
+
+    /**
+     *  4) life left, shortened by LIFE_DECREMENT at every decay step since
+     *  the last freshen().
+     */
+    public int life() {
+      long life = LIFE_INIT + (long) LIFE_DECREMENT * (decaySteps - freshenedAt());
+      return life > 0 ? (int) life : 0;
+    }
+
+    /**
+     * @return the first decay step at which life() is 0, or -1 if never
+     */
+    public int expiryStep() {
+      int lifetime = lifetime(LIFE_INIT, LIFE_DECREMENT);
+      return lifetime < 0 ? -1 : freshenedAt() + lifetime;
+    }
+
+    /**
+     * 6) reseting life as if new.
+     */
+    public abstract void freshen();
+
+    /**
+     * @return true if life > 0
+     */
+    public boolean isAlive() {
+      return life() > 0;
+    }
+
+  }
+
+  /**
+   * An Edge link two nodes together : a File to a Person.
+   */
+  class Edge extends Drawable {
+    protected FileNode nodeFrom;
+    protected PersonNode nodeTo;
+    protected float len;
+
+
+    /**
+     * 1) constructor.
+     */
+    Edge() {
+      super(EDGE_LIFE_INIT, EDGE_LIFE_DECREMENT);
+      this.len      = EDGE_LEN;  // 25
+    }
+
+    /**
+     * 1b) (re)initialisation of a new or recycled edge.
+     * @param from FileNode
+     * @param to PersonNode
+     */
+    void init(FileNode from, PersonNode to) {
+      this.nodeFrom = from;
+      this.nodeTo   = to;
+      setFreshenedAt(decaySteps);
+    }
+
+    public void freshen() {
+      setFreshenedAt(decaySteps);
+    }
+  }
+
+  /**
+   * A node is an abstraction for a File or a Person.
+   */
+  public abstract class Node extends Drawable {
+    protected int id;
+    protected String name;
+    // Position, friction, mass and life live in the store, at id
+    protected final EntityStore store;
+
+    /**
+     * 1) constructor.
+     */
+    Node(int lifeInit, int lifeDecrement, EntityStore store) {
+      super(lifeInit, lifeDecrement);
+      this.store = store;
+    }
+
+    int freshenedAt() {
+      return store.freshenedAt(id);
+    }
+
+    void setFreshenedAt(int step) {
+      store.setFreshenedAt(id, step);
+    }
+
+    public float x() {
+      return store.x(id);
+    }
+
+    public float y() {
+      return store.y(id);
+    }
+
+    public float lastX() {
+      return store.lastX(id);
+    }
+
+    public float lastY() {
+      return store.lastY(id);
+    }
+
+    public float friction() {
+      return store.friction(id);
+    }
+
+    /**
+     * mass of the node
+     */
+    public float mass() {
+      return store.mass(id); // Currently unused
+    }
+
+    public void moveTo(float x, float y) {
+      store.moveTo(id, x, y);
+    }
+
+    public void moveBy(float dx, float dy) {
+      store.moveBy(id, dx, dy);
+    }
+
+    /**
+     * Gives the node its id and a slot in the store.
+     */
+    void bind(int id, float friction, float mass) {
+      this.id = id;
+      store.ensure(id);
+      store.setFriction(id, friction);
+      store.setMass(id, mass);
+      wake();
+    }
+
+    boolean asleep() {
+      return store.still(id) >= SLEEP_FRAMES;
+    }
+
+    /**
+     * Lets a sleeping node move again, from where it is, and puts it back in
+     * its awake list if it is living.
+     */
+    void wake() {
+      if (asleep()) {
+        // The pushes it took while asleep are forgotten
+        store.stop(id);
+        if (living && SLEEP_SPEED > 0)
+          keepAwake();
+      }
+      store.setStill(id, 0);
+    }
+
+    /**
+     * Adds the node to its awake list.
+     */
+    abstract void keepAwake();
+
+    /**
+     * Puts the node where the physics engine starts new ones.
+     */
+    abstract void place();
+
+    /**
+     * Puts the node at a start location, moving at a start velocity.
+     */
+    void place(Vector2f location, Vector2f velocity) {
+      store.place(id, location.x, location.y, location.x + velocity.x, location.y + velocity.y);
+    }
+
+  }
+
+  /**
+   * A node describing a file
+   */
+  class FileNode extends Node implements Comparable<FileNode> {
+    private int nodeHue;
+    protected int touches;
+    private PersonNode lastEditor = null;
+    // Place in the editing list of lastEditor
+    private int editingSlot;
+
+    /**
+     * @return file node as a string
+     */
+    public String toString() {
+      return "FileNode{" + "name='" + name + '\'' + ", nodeHue=" + nodeHue + ", touches=" + touches + '}';
+    }
+
+    /**
+     * 1) constructor.
+     */
+    FileNode() {
+      super(FILE_LIFE_INIT, FILE_LIFE_DECREMENT, fileStore); // 255, -2
+    }
+
+    /**
+     * 1b) (re)initialisation of a new or recycled node, before place().
+     */
+    void init(int pathId) {
+      bind(pathId, 0.9f, FILE_MASS);
+      name = pathNames.get(pathId);
+      touches = 1;
+      setFreshenedAt(decaySteps);
+      lastEditor = null;
+      nodeHue = colorAssigner.getColor(name);
+    }
+
+    void place() {
+      Vector2f location = mPhysicsEngine.startLocation(this);
+      place(location, mPhysicsEngine.startVelocity(this));
+    }
+
+    /**
+     * 6) reseting life as if new.
+     */
+    public void freshen() {
+      setFreshenedAt(decaySteps);
+      wake();
+      if (++touches > maxTouches) {
+        maxTouches = touches;
+      }
+    }
+
+    void keepAwake() {
+      awakeNodes.add(this);
+    }
+
+    /**
+     * Leaves the ring of the last editor, once life has run out.
+     */
+    void leaveEditor() {
+      if (lastEditor != null) {
+        lastEditor.stopEditing(this);
+        lastEditor = null;
+      }
+    }
+
+    public void setEditor(PersonNode editor) {
+      if (editor == lastEditor)
+        return;
+      if (lastEditor != null)
+        lastEditor.stopEditing(this);
+      lastEditor = editor;
+      editor.startEditing(this);
+    }
+
+    public boolean qualifies() {
+      if (this.touches >= (maxTouches * 0.5f)) {
+        return true;
+      }
+      return false;
+    }
+
+    public int compareTo(FileNode fn) {
+      int retval = 0;
+      if (this.touches < fn.touches) {
+        retval = -1;
+      } else if (this.touches > fn.touches) {
+        retval = 1;
+      }
+      return retval;
+    }
+  }
+
+  /**
+   * A node describing a person
+   */
+  class PersonNode extends Node {
+    private int flavor;
+    private int colorCount;
+    protected int touches;
+    public List<FileNode> editing = new ArrayList<FileNode>();
+    // Places in editing left null by files that went, filled lowest first
+    private final FreeSlots editingHoles = new FreeSlots();
+    /**
+     * 1) constructor.
+     */
+    PersonNode() {
+      super(PERSON_LIFE_INIT, PERSON_LIFE_DECREMENT, personStore); // -1
+    }
+
+    /**
+     * 1b) (re)initialisation of a new or recycled node, before place().
+     */
+    void init(int authorId) {
+      bind(authorId, 0.99f, PERSON_MASS); // bigger mass to person then to node, to stabilize them
+      name = authorNames.get(authorId);
+      touches = 1;
+      setFreshenedAt(decaySteps);
+      flavor = 0xFF000000; // black
+      colorCount = 1;
+      editing.clear();
+      editingHoles.clear();
+    }
+
+    void place() {
+      Vector2f location = mPhysicsEngine.startLocation(this);
+      place(location, mPhysicsEngine.startVelocity(this));
+    }
+
+    public void freshen () {
+      setFreshenedAt(decaySteps);
+      wake();
+      touches++;
+    }
+
+    void keepAwake() {
+      awakePeople.add(this);
+    }
+
+    /**
+     * Gives a file the lowest free place in editing.
+     */
+    void startEditing(FileNode file) {
+      if (editingHoles.isEmpty()) {
+        file.editingSlot = editing.size();
+        editing.add(file);
+      } else {
+        file.editingSlot = editingHoles.take();
+        editing.set(file.editingSlot, file);
+      }
+    }
+
+    /**
+     * Leaves a hole where a file was in editing, if it still is there.
+     */
+    void stopEditing(FileNode file) {
+      int slot = file.editingSlot;
+      if (slot < editing.size() && editing.get(slot) == file) {
+        editing.set(slot, null);
+        editingHoles.free(slot);
+      }
+    }
+
+    public void addColor(int c) {
+      flavor = ColorAssigner.lerpColor(flavor, c, 1.0f / colorCount);
+      colorCount++;
+    }
+  }
+
+
+  /**
+   * Runs the simulation without drawing anything, as fast as it goes.
+   * @param args the path to the config file, and optionally a file to
+   *        write the layout of every frame to (see LayoutWriter)
+   */
+  static public void main(String args[]) {
+    if (args.length < 1) {
+      System.err.println("Specify a config file, and optionally a layout file to write.");
+      System.exit(2);
+    }
+    try {
+      List<String> configFileStack = Arrays.asList(new String[]{"defaults/code_swarm.config",
+                                                                "defaults/user.config",
+                                                                args[0]});
+      CodeSwarmConfig config = new CodeSwarmConfig(configFileStack);
+      SwarmEngine engine = new SwarmEngine(config);
+      LayoutWriter layout = null;
+      if (args.length > 1) {
+        layout = new LayoutWriter(args[1]);
+        engine.addSink(layout);
+      }
+      engine.start(config.getStringProperty(CodeSwarmConfig.INPUT_FILE_KEY), args[0]);
+      long start = System.nanoTime();
+      engine.run();
+      double seconds = (System.nanoTime() - start) / 1e9;
+      if (layout != null)
+        layout.close();
+      System.out.println(engine.getFrame() + " frames in " + String.format("%.2f", seconds) + "s, "
+                         + String.format("%.0f", engine.getFrame() / seconds) + " frames per second with "
+                         + engine.getPhysicsEngineName());
+    } catch (IOException e) {
+      System.err.println("Failed due to exception: " + e.getMessage());
+      System.exit(2);
+    } catch (InterruptedException e) {
+      System.err.println("Interrupted");
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @brief Hashed timing wheel of things expiring at a given simulation step
+ *
+ * Step s lands in bucket (s mod size).  The wheel is made larger than the
+ * longest delay it is used for, so a bucket only ever holds things for the
+ * step it is drained at and scheduling and expiring are both O(1).
+ * Rescheduling does not remove the old entry: callers check, when draining,
+ * whether a thing is still due.
+ */
+public class TimingWheel<T>
+{
+  private final List<List<T>> buckets;
+  private final int mask;
+
+  /**
+   * @param longestDelay the most steps ahead anything will be scheduled
+   */
+  public TimingWheel(int longestDelay)
+  {
+    int size = Integer.highestOneBit(Math.max(1, longestDelay)) << 1;
+    buckets = new ArrayList<List<T>>(size);
+    for (int i = 0; i < size; i++)
+      buckets.add(new ArrayList<T>());
+    mask = size - 1;
+  }
+
+  /**
+   * Schedules a thing to be handed out when step is drained.
+   */
+  public void schedule(T thing, int step)
+  {
+    buckets.get(step & mask).add(thing);
+  }
+
+  /**
+   * Hands out and forgets everything scheduled for a step.
+   * @param step the current step; every step must be drained in turn
+   * @param due the list to add the things to
+   */
+  public void drain(int step, List<T> due)
+  {
+    List<T> bucket = buckets.get(step & mask);
+    due.addAll(bucket);
+    bucket.clear();
+  }
+}
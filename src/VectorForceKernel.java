@@ -0,0 +1,104 @@
+/**
+ * Copyright 2008 code_swarm project team
+ *
+ * This file is part of code_swarm.
+ *
+ * code_swarm is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * code_swarm is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * @brief ForceKernel working on as many floats at a time as the CPU does
+ *
+ * Each lane does the same float operations as ForceKernel, so a Verlet
+ * step gives the very same floats and a displacement only differs by the
+ * order its terms are added in.  Needs java --add-modules
+ * jdk.incubator.vector, at build and run time; ForceKernel.create() falls
+ * back to ForceKernel without it.
+ */
+public class VectorForceKernel extends ForceKernel
+{
+  private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+  public void displacement(float[] xs, float[] ys, int count, int self,
+                           float x, float y, float near, float push, float pull, float[] out)
+  {
+    FloatVector vx = FloatVector.broadcast(SPECIES, x);
+    FloatVector vy = FloatVector.broadcast(SPECIES, y);
+    FloatVector vnear = FloatVector.broadcast(SPECIES, near);
+    FloatVector vpush = FloatVector.broadcast(SPECIES, push);
+    FloatVector vpull = FloatVector.broadcast(SPECIES, -pull);
+    FloatVector sumX = FloatVector.zero(SPECIES);
+    FloatVector sumY = FloatVector.zero(SPECIES);
+    float moveX = 0;
+    float moveY = 0;
+    // Everyone before self, then everyone after
+    for (int part = 0; part < 2; part++) {
+      int from = part == 0 ? 0 : Math.max(0, self + 1);
+      int to = part == 0 ? Math.max(0, Math.min(self, count)) : count;
+      int j = from;
+      for (int upper = from + SPECIES.loopBound(to - from); j < upper; j += SPECIES.length()) {
+        FloatVector dx = vx.sub(FloatVector.fromArray(SPECIES, xs, j));
+        FloatVector dy = vy.sub(FloatVector.fromArray(SPECIES, ys, j));
+        FloatVector d2 = dx.mul(dx).add(dy.mul(dy));
+        VectorMask<Float> onTop = d2.compare(VectorOperators.EQ, 0f);
+        FloatVector scale = vpull.blend(vpush, d2.compare(VectorOperators.LT, vnear))
+                                 .blend(0f, onTop)
+                                 .div(d2.blend(1f, onTop).lanewise(VectorOperators.SQRT));
+        sumX = sumX.add(dx.mul(scale));
+        sumY = sumY.add(dy.mul(scale));
+      }
+      for (; j < to; j++) {
+        float dx = x - xs[j];
+        float dy = y - ys[j];
+        float d2 = dx * dx + dy * dy;
+        if (d2 == 0)
+          continue;
+        float scale = (d2 < near ? push : -pull) / (float) Math.sqrt(d2);
+        moveX += dx * scale;
+        moveY += dy * scale;
+      }
+    }
+    out[0] = sumX.reduceLanes(VectorOperators.ADD) + moveX;
+    out[1] = sumY.reduceLanes(VectorOperators.ADD) + moveY;
+  }
+
+  public void integrate(float[] x, float[] y, float[] lastX, float[] lastY,
+                        float[] friction, int[] ids, int count)
+  {
+    int i = 0;
+    for (int upper = SPECIES.loopBound(count); i < upper; i += SPECIES.length()) {
+      FloatVector f = FloatVector.fromArray(SPECIES, friction, 0, ids, i);
+      FloatVector px = FloatVector.fromArray(SPECIES, x, 0, ids, i);
+      FloatVector py = FloatVector.fromArray(SPECIES, y, 0, ids, i);
+      px.add(px.sub(FloatVector.fromArray(SPECIES, lastX, 0, ids, i)).mul(f)).intoArray(x, 0, ids, i);
+      py.add(py.sub(FloatVector.fromArray(SPECIES, lastY, 0, ids, i)).mul(f)).intoArray(y, 0, ids, i);
+      px.intoArray(lastX, 0, ids, i);
+      py.intoArray(lastY, 0, ids, i);
+    }
+    for (; i < count; i++) {
+      int id = ids[i];
+      float px = x[id];
+      float py = y[id];
+      x[id] = px + (px - lastX[id]) * friction[id];
+      y[id] = py + (py - lastY[id]) * friction[id];
+      lastX[id] = px;
+      lastY[id] = py;
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repository.git;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.codeswarm.repositoryevents.BinaryEventWriter;
+import org.codeswarm.repositoryevents.StringTable;
+
+/**
+ * Converts the history of a local git repository into an event file,
+ * replacing {@code convert_logs.py -g}.
+ * <pre>
+ * java org.codeswarm.repository.git.GitHistory path/to/repository events.xml
+ * java org.codeswarm.repository.git.GitHistory path/to/repository events.bin
+ * </pre>
+ * The output is written while git is still producing the log; a name
+ * ending in .bin selects the binary event format, anything else gets the
+ * standard file_events xml. The events are in commit order, so the
+ * project config should keep {@code IsInputSorted=false}.
+ * @see GitLogCursor
+ */
+public class GitHistory {
+    /**
+     * streams the history of a repository into an event file.
+     * @param repository the working tree or git directory to read
+     * @param outputFile the xml or binary event file to write
+     * @return the number of events written
+     * @throws IOException if git fails or the file can't be written
+     */
+    public static long convert(File repository, String outputFile) throws IOException{
+        StringTable authors = new StringTable();
+        StringTable paths = new StringTable();
+        GitLogCursor events = new GitLogCursor(repository, authors, paths);
+        long count = 0;
+        try {
+            if(outputFile.endsWith(".bin")){
+                BinaryEventWriter writer = new BinaryEventWriter(outputFile);
+                try {
+                    while(events.next()){
+                        writer.addEvent(events.getDate(), authors.get(events.getAuthorId()),
+                                paths.get(events.getPathId()));
+                        count++;
+                    }
+                } finally {
+                    writer.close();
+                }
+            }else{
+                Writer writer = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(outputFile), "UTF-8"), 1 << 16);
+                try {
+                    writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<file_events>\n");
+                    while(events.next()){
+                        writer.write("<event filename=\"");
+                        writeEscaped(writer, paths.get(events.getPathId()));
+                        writer.write("\" date=\"");
+                        writer.write(Long.toString(events.getDate()));
+                        writer.write("\" author=\"");
+                        writeEscaped(writer, authors.get(events.getAuthorId()));
+                        writer.write("\"/>\n");
+                        count++;
+                    }
+                    writer.write("</file_events>\n");
+                } finally {
+                    writer.close();
+                }
+            }
+        } finally {
+            events.close();
+        }
+        return count;
+    }
+
+    /**
+     * writes an attribute value, escaping the characters xml reserves.
+     */
+    private static void writeEscaped(Writer writer, String value) throws IOException{
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            switch(c){
+                case '&': writer.write("&amp;"); break;
+                case '<': writer.write("&lt;"); break;
+                case '>': writer.write("&gt;"); break;
+                case '"': writer.write("&quot;"); break;
+                default:
+                    if(c == '\t' || c == '\n' || c == '\r'){
+                        writer.write("&#" + (int) c + ";");
+                    }else if(c < 0x20){
+                        // not allowed in xml 1.0, even as a reference
+                        writer.write('?');
+                    }else{
+                        writer.write(c);
+                    }
+            }
+        }
+    }
+
+    /**
+     * @param args the repository to read and the event file to write
+     */
+    public static void main(String[] args){
+        if(args.length != 2){
+            System.err.println("usage: GitHistory <repository> <output.xml|output.bin>");
+            System.exit(2);
+        }
+        try {
+            long start = System.currentTimeMillis();
+            long count = convert(new File(args[0]), args[1]);
+            System.out.println("Wrote " + count + " events in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            System.err.println("Failed due to exception: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
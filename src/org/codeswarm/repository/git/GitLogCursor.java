@@ -0,0 +1,192 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repository.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.codeswarm.repositoryevents.EventCursor;
+import org.codeswarm.repositoryevents.StringTable;
+
+/**
+ * Streams the history of a local git repository as events, one per changed
+ * file of each commit, oldest commit first.<br />
+ * Runs {@code git log --name-status --reverse} and parses its output while
+ * git is still writing it, so events are available long before the whole
+ * log has been produced. The NUL-separated ({@code -z}) output is used so
+ * that file names never need to be unquoted, and authors and paths are
+ * interned straight from the raw bytes.<br />
+ * Renames are reported as a deletion and an addition, merge commits are
+ * skipped, and the date of an event is the author date of its commit.
+ * Author dates are not guaranteed to increase along the log.
+ */
+public class GitLogCursor implements EventCursor {
+    /** marks the start of a commit header in the log output */
+    private static final byte COMMIT_MARK = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Process process;
+    private final InputStream input;
+    private final StringTable authors;
+    private final StringTable paths;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private byte[] token = new byte[256];
+    private int tokenLength;
+
+    private long commitDate;
+    private int commitAuthor = -1;
+    private int path;
+    private boolean finished = false;
+
+    /**
+     * creates an instance of GitLogCursor and starts git.
+     * @param repository the working tree or git directory to read
+     * @param authors the dictionary author names are interned into
+     * @param paths the dictionary file paths are interned into
+     * @throws IOException if git can't be started
+     */
+    public GitLogCursor(File repository, StringTable authors, StringTable paths) throws IOException{
+        this.authors = authors;
+        this.paths = paths;
+        ProcessBuilder builder = new ProcessBuilder(Arrays.asList(
+                "git", "log", "--name-status", "--reverse", "--no-renames",
+                "--no-color", "-z", "--format=%x01%at%x00%an"));
+        builder.directory(repository);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        process = builder.start();
+        process.getOutputStream().close();
+        input = process.getInputStream();
+    }
+
+    public boolean next() throws IOException{
+        while(!finished){
+            if(!readToken()){
+                finish();
+                return false;
+            }
+            if(tokenLength > 0 && token[0] == COMMIT_MARK){
+                commitDate = parseSeconds() * 1000;
+                if(!readToken()){
+                    throw new IOException("git log ended inside a commit header");
+                }
+                commitAuthor = authors.internUtf8(token, 0, tokenLength);
+                continue;
+            }
+            // Skip the empty tokens and the newline that precede a commit's file list
+            int start = 0;
+            while(start < tokenLength && token[start] == '\n'){
+                start++;
+            }
+            if(start == tokenLength){
+                continue;
+            }
+            if(commitAuthor < 0 || !readToken()){
+                throw new IOException("unexpected git log output");
+            }
+            path = paths.internUtf8(token, 0, tokenLength);
+            return true;
+        }
+        return false;
+    }
+
+    public long getDate(){
+        return commitDate;
+    }
+
+    public int getAuthorId(){
+        return commitAuthor;
+    }
+
+    public int getPathId(){
+        return path;
+    }
+
+    /**
+     * stops git if it is still running.
+     */
+    public void close() throws IOException{
+        finished = true;
+        process.destroy();
+        input.close();
+    }
+
+    /**
+     * reads up to the next NUL into the token buffer.
+     * @return false if the output ended before another token started
+     */
+    private boolean readToken() throws IOException{
+        tokenLength = 0;
+        boolean started = false;
+        while(true){
+            if(position == limit){
+                limit = input.read(buffer, 0, buffer.length);
+                position = 0;
+                if(limit <= 0){
+                    limit = 0;
+                    return started;
+                }
+            }
+            started = true;
+            int end = position;
+            while(end < limit && buffer[end] != 0){
+                end++;
+            }
+            int length = end - position;
+            if(tokenLength + length > token.length){
+                token = Arrays.copyOf(token, Math.max(token.length * 2, tokenLength + length));
+            }
+            System.arraycopy(buffer, position, token, tokenLength, length);
+            tokenLength += length;
+            if(end < limit){
+                position = end + 1;
+                return true;
+            }
+            position = limit;
+        }
+    }
+
+    private long parseSeconds() throws IOException{
+        long seconds = 0;
+        if(tokenLength < 2){
+            throw new IOException("missing commit date in git log output");
+        }
+        for(int i = 1; i < tokenLength; i++){
+            int digit = token[i] - '0';
+            if(digit < 0 || digit > 9){
+                throw new IOException("malformed commit date in git log output");
+            }
+            seconds = seconds * 10 + digit;
+        }
+        return seconds;
+    }
+
+    private void finish() throws IOException{
+        finished = true;
+        input.close();
+        try {
+            int status = process.waitFor();
+            if(status != 0){
+                throw new IOException("git log exited with status " + status);
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("interrupted while waiting for git log", e);
+        }
+    }
+}
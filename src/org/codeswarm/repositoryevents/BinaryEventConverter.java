@@ -0,0 +1,91 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.io.IOException;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Converts a file_events xml file (as written by convert_logs.py or
+ * {@link CodeSwarmEventsSerializer}) to the binary event format.
+ * <pre>
+ * java org.codeswarm.repositoryevents.BinaryEventConverter events.xml events.bin
+ * </pre>
+ * @see BinaryEventFormat
+ */
+public class BinaryEventConverter {
+    /**
+     * streams the events of an xml file into a binary event file.
+     * @param xmlFile the file_events xml file to read
+     * @param binaryFile the binary event file to write
+     * @return the number of events converted
+     * @throws IOException if either file can't be accessed
+     * @throws SAXException if the xml can't be parsed
+     */
+    public static long convert(String xmlFile, String binaryFile) throws IOException, SAXException{
+        final BinaryEventWriter writer = new BinaryEventWriter(binaryFile);
+        final long[] count = new long[1];
+        try {
+            XMLReader reader;
+            try {
+                reader = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+            } catch (ParserConfigurationException e) {
+                throw new SAXException(e);
+            }
+            reader.setContentHandler(new DefaultHandler(){
+                public void startElement(String uri, String localName, String name,
+                        Attributes atts) throws SAXException {
+                    if(name.equals("event")){
+                        try {
+                            writer.addEvent(Long.parseLong(atts.getValue("date")),
+                                    atts.getValue("author"), atts.getValue("filename"));
+                            count[0]++;
+                        } catch (IOException e) {
+                            throw new SAXException(e);
+                        }
+                    }
+                }
+            });
+            reader.parse(xmlFile);
+        } finally {
+            writer.close();
+        }
+        return count[0];
+    }
+
+    /**
+     * @param args the xml file to read and the binary file to write
+     */
+    public static void main(String[] args){
+        if(args.length != 2){
+            System.err.println("usage: BinaryEventConverter <input.xml> <output.bin>");
+            System.exit(2);
+        }
+        try {
+            long start = System.currentTimeMillis();
+            long count = convert(args[0], args[1]);
+            System.out.println("Converted " + count + " events in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            System.err.println("Failed due to exception: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Describes the binary event file layout. All values are big-endian.
+ * <pre>
+ * header   int     magic ("CSEV")
+ *          int     version
+ *          int     flags
+ *          int     number of authors
+ *          int     number of paths
+ *          int     reserved
+ *          long    number of events
+ *          long    offset of the string tables
+ * records  long    date (milliseconds since the epoch)
+ *          int     author id
+ *          int     path id
+ * strings  for every author, then every path:
+ *          int     length in bytes
+ *          byte[]  UTF-8 encoded string
+ * </pre>
+ * Records are fixed width, so record <i>n</i> lives at
+ * {@code HEADER_SIZE + n * RECORD_SIZE} and the file can be memory-mapped
+ * and read without decoding anything but the string tables.
+ * @see BinaryEventWriter
+ * @see BinaryEventReader
+ */
+public final class BinaryEventFormat {
+    /** "CSEV" */
+    public static final int MAGIC = 0x43534556;
+    public static final int VERSION = 1;
+    /** set when every record's date is >= the previous record's date */
+    public static final int FLAG_SORTED = 1;
+
+    public static final int HEADER_SIZE = 40;
+    public static final int RECORD_SIZE = 16;
+
+    static final int FLAGS_OFFSET = 8;
+    static final int AUTHOR_COUNT_OFFSET = 12;
+    static final int PATH_COUNT_OFFSET = 16;
+    static final int EVENT_COUNT_OFFSET = 24;
+    static final int STRINGS_OFFSET_OFFSET = 32;
+
+    private BinaryEventFormat(){
+    }
+
+    /**
+     * checks the first bytes of a file for the binary event magic number.
+     * @param filename the file to check
+     * @return true if filename is a binary event file
+     * @throws IOException if the file can't be read
+     */
+    public static boolean isBinaryEventFile(String filename) throws IOException{
+        InputStream in = new FileInputStream(filename);
+        try {
+            int magic = 0;
+            for(int i = 0; i < 4; i++){
+                int b = in.read();
+                if(b == -1){
+                    return false;
+                }
+                magic = (magic << 8) | b;
+            }
+            return magic == MAGIC;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads a binary event file through memory-mapped buffers.<br />
+ * The string tables are decoded once when the file is opened; after that
+ * the records are walked with a cursor that reads the date and the
+ * author and path ids straight out of the mapping, so no objects are
+ * created per event.
+ * <pre>
+ * BinaryEventReader reader = new BinaryEventReader(filename);
+ * while(reader.next()){
+ *     String author = reader.getAuthors()[reader.getAuthorId()];
+ *     ...
+ * }
+ * </pre>
+ * @see BinaryEventFormat
+ */
+public class BinaryEventReader implements EventCursor, Closeable {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    /** the largest number of records mapped at once; keeps each mapping below 2GB */
+    private static final long WINDOW_RECORDS = (Integer.MAX_VALUE / BinaryEventFormat.RECORD_SIZE) & ~0xFFFL;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int flags;
+    private final long eventCount;
+    private final String[] authors;
+    private final String[] paths;
+
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    private long windowEnd = 0;
+    /** index of the current record, -1 before the first call to next() */
+    private long current = -1;
+    private long date;
+    private int authorId;
+    private int pathId;
+
+    /**
+     * opens the file, checks the header and decodes the string tables.
+     * @param pathToFile the file to read
+     * @throws IOException if the file can't be read or isn't a binary event file
+     */
+    public BinaryEventReader(String pathToFile) throws IOException{
+        file = new RandomAccessFile(pathToFile, "r");
+        try {
+            channel = file.getChannel();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, BinaryEventFormat.HEADER_SIZE);
+            if(header.getInt(0) != BinaryEventFormat.MAGIC){
+                throw new IOException(pathToFile + " is not a binary event file");
+            }
+            if(header.getInt(4) != BinaryEventFormat.VERSION){
+                throw new IOException(pathToFile + " has unsupported version " + header.getInt(4));
+            }
+            flags = header.getInt(BinaryEventFormat.FLAGS_OFFSET);
+            eventCount = header.getLong(BinaryEventFormat.EVENT_COUNT_OFFSET);
+            long stringsOffset = header.getLong(BinaryEventFormat.STRINGS_OFFSET_OFFSET);
+            ByteBuffer strings = channel.map(FileChannel.MapMode.READ_ONLY, stringsOffset, channel.size() - stringsOffset);
+            authors = readStrings(strings, header.getInt(BinaryEventFormat.AUTHOR_COUNT_OFFSET));
+            paths = readStrings(strings, header.getInt(BinaryEventFormat.PATH_COUNT_OFFSET));
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer buffer, int count){
+        String[] result = new String[count];
+        byte[] bytes = new byte[256];
+        for(int i = 0; i < count; i++){
+            int length = buffer.getInt();
+            if(length > bytes.length){
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            buffer.get(bytes, 0, length);
+            result[i] = new String(bytes, 0, length, UTF8);
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the writer saw the events in ascending date order
+     */
+    public boolean isSorted(){
+        return (flags & BinaryEventFormat.FLAG_SORTED) != 0;
+    }
+
+    /**
+     * @return the number of records in the file
+     */
+    public long getEventCount(){
+        return eventCount;
+    }
+
+    /**
+     * @return the author table, indexed by author id
+     */
+    public String[] getAuthors(){
+        return authors;
+    }
+
+    /**
+     * @return the path table, indexed by path id
+     */
+    public String[] getPaths(){
+        return paths;
+    }
+
+    /**
+     * moves the cursor so that the following call to {@link #next()}
+     * reads record <i>index</i>.
+     * @param index the record number to continue with
+     */
+    public void seek(long index){
+        current = index - 1;
+    }
+
+    /**
+     * advances the cursor to the next record.
+     * @return false if there are no more records
+     * @throws IOException if the records can't be mapped
+     */
+    public boolean next() throws IOException{
+        current++;
+        if(current >= eventCount){
+            return false;
+        }
+        if(current < windowStart || current >= windowEnd){
+            mapWindow(current);
+        }
+        int offset = (int)((current - windowStart) * BinaryEventFormat.RECORD_SIZE);
+        date = window.getLong(offset);
+        authorId = window.getInt(offset + 8);
+        pathId = window.getInt(offset + 12);
+        return true;
+    }
+
+    private void mapWindow(long first) throws IOException{
+        windowStart = first;
+        windowEnd = Math.min(eventCount, first + WINDOW_RECORDS);
+        window = channel.map(FileChannel.MapMode.READ_ONLY,
+                BinaryEventFormat.HEADER_SIZE + windowStart * BinaryEventFormat.RECORD_SIZE,
+                (windowEnd - windowStart) * BinaryEventFormat.RECORD_SIZE);
+    }
+
+    /**
+     * @return the date of the current record
+     */
+    public long getDate(){
+        return date;
+    }
+
+    /**
+     * @return the author id of the current record
+     */
+    public int getAuthorId(){
+        return authorId;
+    }
+
+    /**
+     * @return the path id of the current record
+     */
+    public int getPathId(){
+        return pathId;
+    }
+
+    /**
+     * closes the file. Mappings are released by the garbage collector.
+     * @throws IOException if closing fails
+     */
+    public void close() throws IOException{
+        file.close();
+    }
+}
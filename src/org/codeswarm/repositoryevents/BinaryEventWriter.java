@@ -0,0 +1,144 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Streams events into a binary event file.<br />
+ * Events are appended as fixed-width records while authors and paths are
+ * dictionary-encoded; the string tables and the header are written on
+ * {@link #close()}. Only the dictionaries are kept in memory.
+ * @see BinaryEventFormat
+ */
+public class BinaryEventWriter implements Closeable {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final StringTable authors = new StringTable();
+    private final StringTable paths = new StringTable();
+    private long eventCount = 0;
+    private long lastDate = Long.MIN_VALUE;
+    private boolean sorted = true;
+
+    /**
+     * creates the file (truncating it if it exists) and reserves the header.
+     * @param pathToFile the file to write
+     * @throws IOException if the file can't be written
+     */
+    public BinaryEventWriter(String pathToFile) throws IOException{
+        file = new RandomAccessFile(pathToFile, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        buffer.position(BinaryEventFormat.HEADER_SIZE);
+    }
+
+    /**
+     * appends one event.
+     * @param date the date of modification
+     * @param author the user that changed the file
+     * @param filename the path of the file that was changed
+     * @throws IOException if the file can't be written
+     */
+    public void addEvent(long date, String author, String filename) throws IOException{
+        if(buffer.remaining() < BinaryEventFormat.RECORD_SIZE){
+            flush();
+        }
+        if(date < lastDate){
+            sorted = false;
+        }
+        lastDate = date;
+        buffer.putLong(date);
+        buffer.putInt(authors.intern(author));
+        buffer.putInt(paths.intern(filename));
+        eventCount++;
+    }
+
+    /**
+     * appends every event of a list.
+     * @param list the events to write
+     * @throws IOException if the file can't be written
+     */
+    public void addEvents(EventList list) throws IOException{
+        for(Event e : list.getEvents()){
+            addEvent(e.getDate(), e.getAuthor(), e.getFilename());
+        }
+    }
+
+    /**
+     * writes the string tables and the header and closes the file.
+     * @throws IOException if the file can't be written
+     */
+    public void close() throws IOException{
+        try {
+            long stringsOffset = BinaryEventFormat.HEADER_SIZE + eventCount * BinaryEventFormat.RECORD_SIZE;
+            writeStrings(authors);
+            writeStrings(paths);
+            flush();
+
+            ByteBuffer header = ByteBuffer.allocate(BinaryEventFormat.HEADER_SIZE);
+            header.putInt(BinaryEventFormat.MAGIC);
+            header.putInt(BinaryEventFormat.VERSION);
+            header.putInt(sorted ? BinaryEventFormat.FLAG_SORTED : 0);
+            header.putInt(authors.size());
+            header.putInt(paths.size());
+            header.putInt(0);
+            header.putLong(eventCount);
+            header.putLong(stringsOffset);
+            header.flip();
+            while(header.hasRemaining()){
+                channel.write(header, header.position());
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    private void writeStrings(StringTable table) throws IOException{
+        for(int i = 0; i < table.size(); i++){
+            byte[] bytes = table.get(i).getBytes(UTF8);
+            if(buffer.remaining() < 4){
+                flush();
+            }
+            buffer.putInt(bytes.length);
+            int offset = 0;
+            while(offset < bytes.length){
+                if(!buffer.hasRemaining()){
+                    flush();
+                }
+                int n = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, n);
+                offset += n;
+            }
+        }
+    }
+
+    private void flush() throws IOException{
+        buffer.flip();
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
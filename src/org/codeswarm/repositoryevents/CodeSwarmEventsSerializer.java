@@ -77,4 +77,21 @@ public class CodeSwarmEventsSerializer {
         out.close();
     }
 
+    /**
+     * serializes the list to the binary event format instead of xml.
+     * @see BinaryEventFormat
+     * @param pathToFile the path to the binary file to serialize to.
+     *          It gets created if it doesn't exist.
+     * @throws java.io.IOException
+     *          When the serialization failed
+     */
+    public void serializeBinary(String pathToFile) throws IOException{
+        BinaryEventWriter writer = new BinaryEventWriter(pathToFile);
+        try {
+            writer.addEvents(list);
+        } finally {
+            writer.close();
+        }
+    }
+
 }
@@ -0,0 +1,78 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Opens event files that may be compressed, judging by their extension:
+ * <dl>
+ *  <dt>.gz</dt><dd>gzip</dd>
+ *  <dt>.zip</dt><dd>the first entry of a zip archive</dd>
+ * </dl>
+ * Compressed files are decompressed on a separate thread through a
+ * {@link PipelinedInputChannel}, so decompression overlaps parsing.
+ */
+public final class CompressedInput {
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    private CompressedInput(){
+    }
+
+    /**
+     * @param filename the file to check
+     * @return true if the file will be decompressed by {@link #open(String)}
+     */
+    public static boolean isCompressed(String filename){
+        String name = filename.toLowerCase();
+        return name.endsWith(".gz") || name.endsWith(".zip");
+    }
+
+    /**
+     * opens a file for reading, decompressing it if needed.
+     * @param filename the file to open
+     * @return a channel over the (decompressed) contents
+     * @throws IOException if the file can't be opened
+     */
+    public static ReadableByteChannel open(String filename) throws IOException{
+        FileInputStream file = new FileInputStream(filename);
+        if(!isCompressed(filename)){
+            return file.getChannel();
+        }
+        InputStream in;
+        try {
+            if(filename.toLowerCase().endsWith(".gz")){
+                in = new GZIPInputStream(file, STREAM_BUFFER_SIZE);
+            } else {
+                ZipInputStream zip = new ZipInputStream(new BufferedInputStream(file, STREAM_BUFFER_SIZE));
+                if(zip.getNextEntry() == null){
+                    throw new IOException(filename + " is an empty zip archive");
+                }
+                in = zip;
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        return new PipelinedInputChannel(in, "decompress " + filename);
+    }
+}
@@ -0,0 +1,50 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.io.IOException;
+
+/**
+ * A forward-only view over a sequence of events whose authors and paths
+ * are given as dictionary ids.<br />
+ * The accessors describe the event the cursor is on after a successful
+ * call to {@link #next()}; nothing is allocated per event.
+ */
+public interface EventCursor {
+    /**
+     * advances to the next event.
+     * @return false if there are no more events
+     * @throws IOException if the underlying storage can't be read
+     */
+    public boolean next() throws IOException;
+    /**
+     * @return the date of the current event
+     */
+    public long getDate();
+    /**
+     * @return the author id of the current event
+     */
+    public int getAuthorId();
+    /**
+     * @return the path id of the current event
+     */
+    public int getPathId();
+    /**
+     * releases the resources held by the cursor.
+     * @throws IOException if closing fails
+     */
+    public void close() throws IOException;
+}
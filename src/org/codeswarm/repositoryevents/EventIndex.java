@@ -0,0 +1,253 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Maps time buckets of a date-sorted event file to the position of their
+ * first event, so that reading can start at any date.<br />
+ * For a binary event file a position is a record number, for file_events
+ * xml it is the byte offset of an event's start tag. The index is stored
+ * next to the event file with the suffix {@value #SUFFIX}:
+ * <pre>
+ * int     magic ("CSIX")
+ * int     version
+ * long    bucket length in milliseconds
+ * long    length of the event file when indexed
+ * long    modification time of the event file when indexed
+ * int     number of buckets
+ * for every bucket that has events, in date order:
+ * long    start of the bucket
+ * long    position of its first event
+ * </pre>
+ * The index is rebuilt whenever the event file has changed since.
+ * Compressed and unsorted event files can't be indexed.
+ */
+public class EventIndex {
+    /** appended to the event file's name to get the index file's name */
+    public static final String SUFFIX = ".idx";
+    /** "CSIX" */
+    private static final int MAGIC = 0x43534958;
+    private static final int VERSION = 1;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    private final long bucketLength;
+    private final long[] starts;
+    private final long[] positions;
+
+    private EventIndex(long bucketLength, long[] starts, long[] positions){
+        this.bucketLength = bucketLength;
+        this.starts = starts;
+        this.positions = positions;
+    }
+
+    /**
+     * loads the index of an event file, building and saving it first if
+     * it is missing or out of date.
+     * @param eventFile the event file
+     * @param bucketLength the length of a bucket in milliseconds
+     * @return the index
+     * @throws IOException if the event file can't be indexed
+     */
+    public static EventIndex open(String eventFile, long bucketLength) throws IOException{
+        File source = new File(eventFile);
+        File indexFile = new File(eventFile + SUFFIX);
+        if(indexFile.isFile()){
+            EventIndex index = read(indexFile, source, bucketLength);
+            if(index != null){
+                return index;
+            }
+        }
+        EventIndex index = build(eventFile, bucketLength);
+        try {
+            index.write(indexFile, source);
+        } catch (IOException e) {
+            // still usable, it just has to be built again next time
+            indexFile.delete();
+        }
+        return index;
+    }
+
+    /**
+     * indexes an event file.
+     * @param eventFile the binary event file or uncompressed xml to index
+     * @param bucketLength the length of a bucket in milliseconds
+     * @return the index
+     * @throws IOException if the file can't be read, is compressed or
+     *         isn't sorted by date
+     */
+    public static EventIndex build(String eventFile, long bucketLength) throws IOException{
+        if(CompressedInput.isCompressed(eventFile)){
+            throw new IOException(eventFile + " is compressed and can't be indexed");
+        }
+        Builder builder = new Builder(eventFile, bucketLength);
+        if(BinaryEventFormat.isBinaryEventFile(eventFile)){
+            BinaryEventReader reader = new BinaryEventReader(eventFile);
+            try {
+                for(long record = 0; reader.next(); record++){
+                    builder.add(reader.getDate(), record);
+                }
+            } finally {
+                reader.close();
+            }
+        }else{
+            XMLEventScanner scanner = new XMLEventScanner(new FileInputStream(eventFile).getChannel(),
+                    new StringTable(), new StringTable());
+            try {
+                while(scanner.next()){
+                    builder.add(scanner.getDate(), scanner.getEventOffset());
+                }
+            } finally {
+                scanner.close();
+            }
+        }
+        return builder.finish();
+    }
+
+    /**
+     * collects the first position of every bucket from events in file order.
+     */
+    private static class Builder {
+        private final String eventFile;
+        private final long bucketLength;
+        private long[] starts = new long[64];
+        private long[] positions = new long[64];
+        private int count = 0;
+        private long lastDate = Long.MIN_VALUE;
+
+        Builder(String eventFile, long bucketLength){
+            this.eventFile = eventFile;
+            this.bucketLength = bucketLength;
+        }
+
+        void add(long date, long position) throws IOException{
+            if(date < lastDate){
+                throw new IOException(eventFile + " is not sorted by date");
+            }
+            lastDate = date;
+            long start = bucketStart(date, bucketLength);
+            if(count > 0 && starts[count - 1] == start){
+                return;
+            }
+            if(count == starts.length){
+                starts = Arrays.copyOf(starts, count * 2);
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            starts[count] = start;
+            positions[count] = position;
+            count++;
+        }
+
+        EventIndex finish(){
+            return new EventIndex(bucketLength, Arrays.copyOf(starts, count), Arrays.copyOf(positions, count));
+        }
+    }
+
+    private static long bucketStart(long date, long bucketLength){
+        return Math.floorDiv(date, bucketLength) * bucketLength;
+    }
+
+    /**
+     * @return the index, or null if it doesn't match the event file
+     */
+    private static EventIndex read(File indexFile, File source, long bucketLength) throws IOException{
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), IO_BUFFER_SIZE));
+        try {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != bucketLength
+                    || in.readLong() != source.length() || in.readLong() != source.lastModified()){
+                return null;
+            }
+            int count = in.readInt();
+            long[] starts = new long[count];
+            long[] positions = new long[count];
+            for(int i = 0; i < count; i++){
+                starts[i] = in.readLong();
+                positions[i] = in.readLong();
+            }
+            return new EventIndex(bucketLength, starts, positions);
+        } finally {
+            in.close();
+        }
+    }
+
+    private void write(File indexFile, File source) throws IOException{
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), IO_BUFFER_SIZE));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(bucketLength);
+            out.writeLong(source.length());
+            out.writeLong(source.lastModified());
+            out.writeInt(starts.length);
+            for(int i = 0; i < starts.length; i++){
+                out.writeLong(starts[i]);
+                out.writeLong(positions[i]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * finds where to start reading to get every event from a date on.
+     * Events of the same bucket before the date may come first.
+     * @param date the earliest date wanted
+     * @return the position of the first event of the date's bucket, or of
+     *         the next bucket with events
+     */
+    public long find(long date){
+        if(starts.length == 0){
+            return 0;
+        }
+        // Long.MIN_VALUE (no StartDate) would overflow in bucketStart()
+        if(date <= starts[0]){
+            return positions[0];
+        }
+        int i = Arrays.binarySearch(starts, bucketStart(date, bucketLength));
+        if(i < 0){
+            // the first bucket after the date's own, which is empty
+            i = -i - 1;
+            if(i == starts.length){
+                return positions[i - 1];
+            }
+        }
+        return positions[i];
+    }
+
+    /**
+     * opens an uncompressed xml event file at a byte offset found with
+     * {@link #find(long)}.
+     * @param eventFile the indexed xml file
+     * @param offset the byte offset to start at
+     * @return a channel positioned at the offset
+     * @throws IOException if the file can't be opened
+     */
+    public static FileChannel openAt(String eventFile, long offset) throws IOException{
+        FileChannel channel = new FileInputStream(eventFile).getChannel();
+        channel.position(offset);
+        return channel;
+    }
+}
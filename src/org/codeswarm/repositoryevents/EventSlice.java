@@ -0,0 +1,81 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+/**
+ * The events of one simulation frame, in date order, with authors and
+ * paths given as dictionary ids.<br />
+ * Events are stored in parallel arrays so that a whole frame is handed
+ * from the loader to the simulation as a single object.
+ * @see FrameSlicer
+ */
+public class EventSlice {
+    private final long[] dates;
+    private final int[] authorIds;
+    private final int[] pathIds;
+    private final long appendTime;
+
+    /**
+     * creates an instance of EventSlice, taking ownership of the arrays.
+     * @param dates the event dates
+     * @param authorIds the author ids of the events
+     * @param pathIds the path ids of the events
+     * @param appendTime when the newest event was appended to followed
+     *        input, 0 if unknown
+     */
+    public EventSlice(long[] dates, int[] authorIds, int[] pathIds, long appendTime){
+        this.dates = dates;
+        this.authorIds = authorIds;
+        this.pathIds = pathIds;
+        this.appendTime = appendTime;
+    }
+
+    /**
+     * @return the number of events in this slice
+     */
+    public int size(){
+        return dates.length;
+    }
+
+    /**
+     * @return the date of the event at index i
+     */
+    public long getDate(int i){
+        return dates[i];
+    }
+
+    /**
+     * @return the author id of the event at index i
+     */
+    public int getAuthorId(int i){
+        return authorIds[i];
+    }
+
+    /**
+     * @return the path id of the event at index i
+     */
+    public int getPathId(int i){
+        return pathIds[i];
+    }
+
+    /**
+     * @return when the newest event of this slice was appended to followed
+     *         input, 0 if unknown
+     */
+    public long getAppendTime(){
+        return appendTime;
+    }
+}
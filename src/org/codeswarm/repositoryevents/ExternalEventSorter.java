@@ -0,0 +1,350 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sorts an unbounded stream of events by date with bounded memory.<br />
+ * Events are collected into runs of a fixed size. Each full run is sorted
+ * on a worker thread and spilled to a temporary file, while the caller
+ * keeps filling the next run. {@link #finish()} returns a cursor that
+ * streams a k-way merge of the spilled runs, so the first events are
+ * available as soon as the input has been read.<br />
+ * The sort is stable: events with equal dates keep their input order.
+ * At most {@code threads + 1} runs are held in memory at any time, each
+ * with a second set of arrays of the same size that it sorts into.
+ */
+public class ExternalEventSorter {
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    private final int runSize;
+    private final ExecutorService pool;
+    private final BlockingQueue<Run> freeRuns;
+    private final List<Future<File>> spills = new ArrayList<Future<File>>();
+    private Run current;
+
+    /**
+     * @param runSize the number of events sorted in memory at once
+     * @param threads the number of threads sorting and spilling runs
+     */
+    public ExternalEventSorter(int runSize, int threads){
+        this.runSize = runSize;
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.freeRuns = new ArrayBlockingQueue<Run>(threads + 1);
+        this.current = new Run(runSize);
+        for(int i = 0; i < threads; i++){
+            freeRuns.add(new Run(runSize));
+        }
+    }
+
+    /**
+     * adds one event; blocks while all run buffers are being sorted.
+     * @param date the date of the event
+     * @param authorId the author id of the event
+     * @param pathId the path id of the event
+     * @throws InterruptedException if interrupted while waiting for a free run
+     */
+    public void add(long date, int authorId, int pathId) throws InterruptedException{
+        if(current.size == runSize){
+            spill(current);
+            current = freeRuns.take();
+        }
+        current.add(date, authorId, pathId);
+    }
+
+    private void spill(final Run run){
+        spills.add(pool.submit(new Callable<File>(){
+            public File call() throws IOException{
+                try {
+                    run.sort();
+                    return run.write();
+                } finally {
+                    run.size = 0;
+                    freeRuns.add(run);
+                }
+            }
+        }));
+    }
+
+    /**
+     * ends the input and starts merging.<br />
+     * If everything fit into a single run nothing is written to disk.
+     * @return a cursor over all added events in date order
+     * @throws IOException if a run couldn't be spilled or read back
+     */
+    public EventCursor finish() throws IOException{
+        try {
+            if(spills.isEmpty()){
+                current.sort();
+                return current.cursor();
+            }
+            current.sort();
+            List<EventCursor> runs = new ArrayList<EventCursor>(spills.size() + 1);
+            for(Future<File> spill : spills){
+                runs.add(new RunFileCursor(spill.get()));
+            }
+            runs.add(current.cursor());
+            return new MergeCursor(runs);
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while spilling runs", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to spill a run", e.getCause());
+        } finally {
+            pool.shutdown();
+            freeRuns.clear();
+        }
+    }
+
+    /**
+     * A buffer of events held in parallel primitive arrays, with scratch
+     * arrays for sorting that are allocated once and reused by every sort.
+     */
+    private static class Run {
+        long[] dates;
+        int[] authors;
+        int[] paths;
+        long[] scratchDates;
+        int[] scratchAuthors;
+        int[] scratchPaths;
+        int size = 0;
+
+        Run(int capacity){
+            dates = new long[capacity];
+            authors = new int[capacity];
+            paths = new int[capacity];
+            scratchDates = new long[capacity];
+            scratchAuthors = new int[capacity];
+            scratchPaths = new int[capacity];
+        }
+
+        void add(long date, int authorId, int pathId){
+            dates[size] = date;
+            authors[size] = authorId;
+            paths[size] = pathId;
+            size++;
+        }
+
+        /**
+         * bottom-up merge sort on the dates, swapping whole arrays between passes.
+         */
+        void sort(){
+            long[] srcDates = dates, dstDates = scratchDates;
+            int[] srcAuthors = authors, dstAuthors = scratchAuthors;
+            int[] srcPaths = paths, dstPaths = scratchPaths;
+            for(int width = 1; width < size; width *= 2){
+                for(int lo = 0; lo < size; lo += 2 * width){
+                    int mid = Math.min(lo + width, size);
+                    int hi = Math.min(lo + 2 * width, size);
+                    int i = lo, j = mid;
+                    for(int k = lo; k < hi; k++){
+                        int from = (i < mid && (j >= hi || srcDates[i] <= srcDates[j])) ? i++ : j++;
+                        dstDates[k] = srcDates[from];
+                        dstAuthors[k] = srcAuthors[from];
+                        dstPaths[k] = srcPaths[from];
+                    }
+                }
+                long[] td = srcDates; srcDates = dstDates; dstDates = td;
+                int[] ta = srcAuthors; srcAuthors = dstAuthors; dstAuthors = ta;
+                int[] tp = srcPaths; srcPaths = dstPaths; dstPaths = tp;
+            }
+            dates = srcDates;
+            authors = srcAuthors;
+            paths = srcPaths;
+            scratchDates = dstDates;
+            scratchAuthors = dstAuthors;
+            scratchPaths = dstPaths;
+        }
+
+        File write() throws IOException{
+            File file = File.createTempFile("code_swarm", ".run");
+            file.deleteOnExit();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), IO_BUFFER_SIZE));
+            try {
+                for(int i = 0; i < size; i++){
+                    out.writeLong(dates[i]);
+                    out.writeInt(authors[i]);
+                    out.writeInt(paths[i]);
+                }
+            } finally {
+                out.close();
+            }
+            return file;
+        }
+
+        EventCursor cursor(){
+            return new EventCursor(){
+                int index = -1;
+                public boolean next(){
+                    return ++index < size;
+                }
+                public long getDate(){
+                    return dates[index];
+                }
+                public int getAuthorId(){
+                    return authors[index];
+                }
+                public int getPathId(){
+                    return paths[index];
+                }
+                public void close(){
+                }
+            };
+        }
+    }
+
+    /**
+     * Streams a spilled run back and deletes it when exhausted.
+     */
+    private static class RunFileCursor implements EventCursor {
+        private final File file;
+        private final DataInputStream in;
+        private long date;
+        private int authorId;
+        private int pathId;
+
+        RunFileCursor(File file) throws IOException{
+            this.file = file;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), IO_BUFFER_SIZE));
+        }
+
+        public boolean next() throws IOException{
+            try {
+                date = in.readLong();
+                authorId = in.readInt();
+                pathId = in.readInt();
+                return true;
+            } catch (EOFException e) {
+                close();
+                return false;
+            }
+        }
+        public long getDate(){
+            return date;
+        }
+        public int getAuthorId(){
+            return authorId;
+        }
+        public int getPathId(){
+            return pathId;
+        }
+        public void close() throws IOException{
+            in.close();
+            file.delete();
+        }
+    }
+
+    /**
+     * Merges sorted cursors through a binary heap keyed on (date, run index);
+     * the run index keeps the merge stable.
+     */
+    private static class MergeCursor implements EventCursor {
+        private final EventCursor[] heap;
+        private final int[] order;
+        private int size = 0;
+        private EventCursor top;
+
+        MergeCursor(List<EventCursor> runs) throws IOException{
+            heap = new EventCursor[runs.size()];
+            order = new int[runs.size()];
+            for(int i = 0; i < runs.size(); i++){
+                EventCursor run = runs.get(i);
+                if(run.next()){
+                    heap[size] = run;
+                    order[size] = i;
+                    siftUp(size++);
+                }
+            }
+        }
+
+        public boolean next() throws IOException{
+            if(top != null){
+                if(top.next()){
+                    siftDown(0);
+                } else {
+                    size--;
+                    heap[0] = heap[size];
+                    order[0] = order[size];
+                    heap[size] = null;
+                    siftDown(0);
+                }
+            }
+            top = size > 0 ? heap[0] : null;
+            return top != null;
+        }
+
+        private boolean less(int a, int b){
+            long da = heap[a].getDate(), db = heap[b].getDate();
+            return da < db || (da == db && order[a] < order[b]);
+        }
+
+        private void swap(int a, int b){
+            EventCursor c = heap[a]; heap[a] = heap[b]; heap[b] = c;
+            int o = order[a]; order[a] = order[b]; order[b] = o;
+        }
+
+        private void siftUp(int i){
+            while(i > 0 && less(i, (i - 1) / 2)){
+                swap(i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        }
+
+        private void siftDown(int i){
+            while(true){
+                int l = 2 * i + 1, r = l + 1, m = i;
+                if(l < size && less(l, m)) m = l;
+                if(r < size && less(r, m)) m = r;
+                if(m == i) return;
+                swap(i, m);
+                i = m;
+            }
+        }
+
+        public long getDate(){
+            return top.getDate();
+        }
+        public int getAuthorId(){
+            return top.getAuthorId();
+        }
+        public int getPathId(){
+            return top.getPathId();
+        }
+        public void close() throws IOException{
+            for(int i = 0; i < size; i++){
+                heap[i].close();
+            }
+            size = 0;
+        }
+    }
+}
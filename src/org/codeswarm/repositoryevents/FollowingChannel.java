@@ -0,0 +1,188 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A channel over a file that is still being appended to, like tail -f.<br />
+ * Instead of reporting the end of the file, {@link #read(ByteBuffer)}
+ * waits until more data is appended. The file's directory is watched with
+ * a WatchService; the wait also times out after a polling interval, for
+ * file systems that don't deliver change events. If the file shrinks it
+ * is assumed to have been truncated and is read again from the start. If
+ * the name comes to refer to a different file, as when a log is rotated
+ * by renaming it and creating a new one, the new file is opened and read
+ * from the start once the old one is exhausted. That check needs the file
+ * system to report a file key (an inode on Unix).
+ */
+public class FollowingChannel implements ReadableByteChannel {
+    private final File file;
+    private FileChannel channel;
+    private Object fileKey;
+    private final WatchService watcher;
+    private final long pollMillis;
+    private volatile long lastAppendTime = 0;
+    private Runnable idleHandler = null;
+
+    /**
+     * @param filename the file to follow
+     * @param pollMillis the longest time to wait between checks for new data
+     * @throws IOException if the file can't be opened
+     */
+    public FollowingChannel(String filename, long pollMillis) throws IOException{
+        this.file = new File(filename).getAbsoluteFile();
+        this.channel = new FileInputStream(file).getChannel();
+        this.fileKey = currentFileKey();
+        this.pollMillis = pollMillis;
+        WatchService service = null;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+            Path directory = file.getParentFile().toPath();
+            directory.register(service, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException e) {
+            // polling alone still works
+            if(service != null){
+                service.close();
+            }
+            service = null;
+        } catch (UnsupportedOperationException e) {
+            service = null;
+        }
+        this.watcher = service;
+    }
+
+    /**
+     * sets code to run on the reading thread whenever it is about to wait
+     * for the file to grow, e.g. to pass on what has been read so far.
+     * @param idleHandler the code to run, or null
+     */
+    public void setIdleHandler(Runnable idleHandler){
+        this.idleHandler = idleHandler;
+    }
+
+    /**
+     * @return the modification time of the file when data was last read
+     *         after waiting for it, 0 before that
+     */
+    public long getLastAppendTime(){
+        return lastAppendTime;
+    }
+
+    /**
+     * reads what is available, waiting for the file to grow if nothing is.
+     * @return the number of bytes read, never -1 while the channel is open
+     * @throws IOException if the file can't be read or the wait is interrupted
+     */
+    public int read(ByteBuffer dst) throws IOException{
+        boolean waited = false;
+        while(true){
+            int n = channel.read(dst);
+            if(n != -1){
+                if(waited && n > 0){
+                    lastAppendTime = file.lastModified();
+                }
+                return n;
+            }
+            if(channel.size() < channel.position()){
+                channel.position(0);
+                continue;
+            }
+            if(waited && reopenIfReplaced()){
+                continue;
+            }
+            if(!waited && idleHandler != null){
+                idleHandler.run();
+            }
+            waitForChange();
+            waited = true;
+        }
+    }
+
+    private void waitForChange() throws IOException{
+        try {
+            if(watcher == null){
+                Thread.sleep(pollMillis);
+                return;
+            }
+            WatchKey key = watcher.poll(pollMillis, TimeUnit.MILLISECONDS);
+            if(key != null){
+                key.pollEvents();
+                key.reset();
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while following " + file, e);
+        }
+    }
+
+    /**
+     * opens the file by name again if it is no longer the one being read.
+     * @return true if a new file was opened
+     */
+    private boolean reopenIfReplaced() throws IOException{
+        Object key = currentFileKey();
+        if(key == null || fileKey == null || key.equals(fileKey)){
+            return false;
+        }
+        FileChannel replacement;
+        try {
+            replacement = new FileInputStream(file).getChannel();
+        } catch (IOException e) {
+            // gone again before it could be opened; try on the next change
+            return false;
+        }
+        channel.close();
+        channel = replacement;
+        fileKey = key;
+        return true;
+    }
+
+    /**
+     * @return the file key of whatever the name refers to now, or null if
+     *         there is none or it can't be read
+     */
+    private Object currentFileKey(){
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public boolean isOpen(){
+        return channel.isOpen();
+    }
+
+    public void close() throws IOException{
+        if(watcher != null){
+            watcher.close();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,106 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.util.Arrays;
+
+/**
+ * Groups a date-ordered stream of events into one {@link EventSlice} per
+ * frame and hands the slices to a {@link SliceRing}.<br />
+ * Frames are {@code frameLength} milliseconds long, counted from the date
+ * of the first event, matching the steps of the simulation. A frame with
+ * very many events is split over several slices of bounded size.
+ */
+public class FrameSlicer {
+    private final SliceRing<EventSlice> ring;
+    private final long frameLength;
+    private final int maxSliceSize;
+    private final long[] dates;
+    private final int[] authorIds;
+    private final int[] pathIds;
+    private int size = 0;
+    private long firstDate;
+    private long frameEnd;
+    private boolean started = false;
+    private long appendTime = 0;
+
+    /**
+     * @param ring the ring the slices are handed to
+     * @param frameLength the length of a frame in milliseconds
+     * @param maxSliceSize the most events put in one slice
+     */
+    public FrameSlicer(SliceRing<EventSlice> ring, long frameLength, int maxSliceSize){
+        this.ring = ring;
+        this.frameLength = Math.max(1, frameLength);
+        this.maxSliceSize = maxSliceSize;
+        dates = new long[maxSliceSize];
+        authorIds = new int[maxSliceSize];
+        pathIds = new int[maxSliceSize];
+    }
+
+    /**
+     * adds the next event. Dates must not decrease.
+     * @throws InterruptedException if interrupted while the ring is full
+     */
+    public void add(long date, int authorId, int pathId) throws InterruptedException{
+        if(!started){
+            started = true;
+            firstDate = date;
+            frameEnd = date + frameLength;
+        }
+        if(date >= frameEnd){
+            flush();
+            frameEnd = firstDate + ((date - firstDate) / frameLength + 1) * frameLength;
+        }else if(size == maxSliceSize){
+            flush();
+        }
+        dates[size] = date;
+        authorIds[size] = authorId;
+        pathIds[size] = pathId;
+        size++;
+    }
+
+    /**
+     * records when the events being added were appended to followed input.
+     * @param appendTime the time in milliseconds
+     */
+    public void setAppendTime(long appendTime){
+        this.appendTime = appendTime;
+    }
+
+    /**
+     * hands over the events collected so far, even though their frame may
+     * not be complete yet.
+     * @throws InterruptedException if interrupted while the ring is full
+     */
+    public void flush() throws InterruptedException{
+        if(size == 0){
+            return;
+        }
+        ring.put(new EventSlice(Arrays.copyOf(dates, size), Arrays.copyOf(authorIds, size),
+                Arrays.copyOf(pathIds, size), appendTime));
+        size = 0;
+    }
+
+    /**
+     * hands over the last slice and ends the stream.
+     * @throws InterruptedException if interrupted while the ring is full
+     */
+    public void close() throws InterruptedException{
+        flush();
+        ring.close();
+    }
+}
@@ -0,0 +1,329 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Parses a large file_events xml file on several threads.<br />
+ * The file is split into byte ranges that start on an {@code <event}
+ * element. Each range is wrapped in a synthetic root element and parsed
+ * with its own SAX reader on a fork-join pool. The returned cursor hands
+ * the events out in file order, so sorted input stays sorted and can be
+ * consumed while later ranges are still being parsed; only a window of
+ * ranges is in flight at any time.<br />
+ * Each range interns into its own dictionaries, which are merged into the
+ * shared ones in file order, so ids are assigned exactly as a single
+ * sequential pass would assign them.<br />
+ * NOTE: Ranges other than the first are parsed as UTF-8.
+ */
+public class ParallelXMLEventParser {
+    private static final byte[] EVENT_TAG = "<event".getBytes();
+    private static final byte[] ROOT_OPEN = "<file_events>".getBytes();
+    private static final byte[] ROOT_CLOSE = "</file_events>".getBytes();
+    /** creating a reader is expensive, so each pool thread keeps one */
+    private static final ThreadLocal<XMLReader> READERS = new ThreadLocal<XMLReader>();
+
+    private final String filename;
+    private final StringTable authors;
+    private final StringTable paths;
+    private final int threads;
+    private final int chunkSize;
+
+    /**
+     * @param filename the xml file to parse
+     * @param authors the dictionary to intern authors into
+     * @param paths the dictionary to intern paths into
+     * @param threads the number of parser threads
+     * @param chunkSize the approximate size in bytes of each range
+     */
+    public ParallelXMLEventParser(String filename, StringTable authors, StringTable paths, int threads, int chunkSize){
+        this.filename = filename;
+        this.authors = authors;
+        this.paths = paths;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * splits the file and starts parsing.
+     * @return a cursor over the events in file order, with ids from the
+     *         shared dictionaries
+     * @throws IOException if the file can't be read
+     */
+    public EventCursor parse() throws IOException{
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        return new ChunkCursor(file, split(file.getChannel()));
+    }
+
+    /**
+     * @return the start offsets of the ranges, followed by the file length
+     */
+    private long[] split(FileChannel channel) throws IOException{
+        long length = channel.size();
+        List<Long> bounds = new ArrayList<Long>();
+        bounds.add(0L);
+        long position = chunkSize;
+        while(position < length){
+            long start = findEvent(channel, position);
+            if(start < 0){
+                break;
+            }
+            if(start > bounds.get(bounds.size() - 1)){
+                bounds.add(start);
+            }
+            position = start + chunkSize;
+        }
+        bounds.add(length);
+        long[] result = new long[bounds.size()];
+        for(int i = 0; i < result.length; i++){
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return the offset of the first {@code <event} element at or after
+     *         position, or -1 if there is none
+     */
+    private static long findEvent(FileChannel channel, long position) throws IOException{
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        while(position < channel.size()){
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if(n <= EVENT_TAG.length){
+                return -1;
+            }
+            for(int i = 0; i + EVENT_TAG.length < n; i++){
+                if(matches(buffer, i) && isNameEnd(buffer.get(i + EVENT_TAG.length))){
+                    return position + i;
+                }
+            }
+            // overlap so that a tag spanning two reads is still found
+            position += n - EVENT_TAG.length;
+        }
+        return -1;
+    }
+
+    private static boolean matches(ByteBuffer buffer, int offset){
+        for(int j = 0; j < EVENT_TAG.length; j++){
+            if(buffer.get(offset + j) != EVENT_TAG[j]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNameEnd(byte b){
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '/' || b == '>';
+    }
+
+    /**
+     * The parsed events of one byte range, with ids local to the range.
+     */
+    private static class Chunk {
+        long[] dates = new long[1024];
+        int[] authorIds = new int[1024];
+        int[] pathIds = new int[1024];
+        int size = 0;
+        final StringTable authors = new StringTable();
+        final StringTable paths = new StringTable();
+
+        void add(long date, int authorId, int pathId){
+            if(size == dates.length){
+                dates = Arrays.copyOf(dates, size * 2);
+                authorIds = Arrays.copyOf(authorIds, size * 2);
+                pathIds = Arrays.copyOf(pathIds, size * 2);
+            }
+            dates[size] = date;
+            authorIds[size] = authorId;
+            pathIds[size] = pathId;
+            size++;
+        }
+    }
+
+    /**
+     * Parses one byte range, with the {@link XMLEventScanner} if it can
+     * handle the range and SAX otherwise.
+     */
+    private static class ChunkParser implements Callable<Chunk> {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final boolean first;
+        private final boolean last;
+
+        ChunkParser(FileChannel channel, long start, long end, boolean first, boolean last){
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.first = first;
+            this.last = last;
+        }
+
+        public Chunk call() throws IOException, SAXException{
+            byte[] bytes = new byte[(int)(end - start)];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while(buffer.hasRemaining()){
+                if(channel.read(buffer, start + buffer.position()) < 0){
+                    throw new IOException("Unexpected end of file");
+                }
+            }
+            Chunk chunk = new Chunk();
+            XMLEventScanner scanner = new XMLEventScanner(ByteBuffer.wrap(bytes), chunk.authors, chunk.paths);
+            try {
+                while(scanner.next()){
+                    chunk.add(scanner.getDate(), scanner.getAuthorId(), scanner.getPathId());
+                }
+                return chunk;
+            } catch (XMLEventScanner.UnsupportedInputException e) {
+                return parseWithSAX(bytes);
+            }
+        }
+
+        private Chunk parseWithSAX(byte[] bytes) throws IOException, SAXException{
+            InputStream in = new ByteArrayInputStream(bytes);
+            if(!first){
+                in = new SequenceInputStream(new ByteArrayInputStream(ROOT_OPEN), in);
+            }
+            if(!last){
+                in = new SequenceInputStream(in, new ByteArrayInputStream(ROOT_CLOSE));
+            }
+            InputSource source = new InputSource(in);
+            if(!first){
+                source.setEncoding("UTF-8");
+            }
+
+            final Chunk chunk = new Chunk();
+            XMLReader reader = READERS.get();
+            if(reader == null){
+                try {
+                    reader = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+                } catch (ParserConfigurationException e) {
+                    throw new SAXException(e);
+                }
+                READERS.set(reader);
+            }
+            reader.setContentHandler(new DefaultHandler(){
+                public void startElement(String uri, String localName, String name,
+                        Attributes atts) throws SAXException {
+                    if(name.equals("event")){
+                        chunk.add(Long.parseLong(atts.getValue("date")),
+                                chunk.authors.intern(atts.getValue("author")),
+                                chunk.paths.intern(atts.getValue("filename")));
+                    }
+                }
+            });
+            reader.parse(source);
+            return chunk;
+        }
+    }
+
+    /**
+     * Walks the parsed ranges in order, keeping the pool busy with the next ones.
+     */
+    private class ChunkCursor implements EventCursor {
+        private final RandomAccessFile file;
+        private final long[] bounds;
+        private final ForkJoinPool pool = new ForkJoinPool(threads);
+        private final LinkedList<Future<Chunk>> pending = new LinkedList<Future<Chunk>>();
+        private int submitted = 0;
+        private Chunk chunk = null;
+        private int[] authorRemap;
+        private int[] pathRemap;
+        private int index = -1;
+
+        ChunkCursor(RandomAccessFile file, long[] bounds){
+            this.file = file;
+            this.bounds = bounds;
+            fill();
+        }
+
+        private void fill(){
+            int ranges = bounds.length - 1;
+            while(submitted < ranges && pending.size() < 2 * threads){
+                pending.add(pool.submit(new ChunkParser(file.getChannel(),
+                        bounds[submitted], bounds[submitted + 1],
+                        submitted == 0, submitted == ranges - 1)));
+                submitted++;
+            }
+        }
+
+        public boolean next() throws IOException{
+            while(chunk == null || ++index >= chunk.size){
+                if(pending.isEmpty()){
+                    close();
+                    return false;
+                }
+                try {
+                    chunk = pending.removeFirst().get();
+                } catch (InterruptedException e) {
+                    throw new IOException("Interrupted while parsing " + filename, e);
+                } catch (ExecutionException e) {
+                    throw new IOException("Failed to parse " + filename, e.getCause());
+                }
+                fill();
+                authorRemap = remap(chunk.authors, authors);
+                pathRemap = remap(chunk.paths, paths);
+                index = -1;
+            }
+            return true;
+        }
+
+        private int[] remap(StringTable local, StringTable shared){
+            int[] remap = new int[local.size()];
+            for(int i = 0; i < remap.length; i++){
+                remap[i] = shared.intern(local.get(i));
+            }
+            return remap;
+        }
+
+        public long getDate(){
+            return chunk.dates[index];
+        }
+        public int getAuthorId(){
+            return authorRemap[chunk.authorIds[index]];
+        }
+        public int getPathId(){
+            return pathRemap[chunk.pathIds[index]];
+        }
+        public void close() throws IOException{
+            pool.shutdownNow();
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A channel over an InputStream that is read ahead on its own thread.<br />
+ * The thread fills buffers from a small pool and hands them over through a
+ * bounded queue, so an expensive stream (such as a decompressor) runs
+ * concurrently with whatever consumes the channel.
+ * @see CompressedInput
+ */
+public class PipelinedInputChannel implements ReadableByteChannel {
+    private static final int BUFFER_SIZE = 1 << 18;
+    private static final int BUFFERS = 4;
+    /** marks the end of the stream (or a failure) in the filled queue */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final InputStream in;
+    private final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<ByteBuffer>(BUFFERS + 1);
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<ByteBuffer>(BUFFERS);
+    private final Thread reader;
+    private volatile IOException failure = null;
+    private ByteBuffer current = null;
+    private boolean ended = false;
+    private boolean open = true;
+
+    /**
+     * starts reading the stream.
+     * @param in the stream to read ahead
+     * @param name names the reading thread
+     */
+    public PipelinedInputChannel(InputStream in, String name){
+        this.in = in;
+        for(int i = 0; i < BUFFERS; i++){
+            free.add(ByteBuffer.allocate(BUFFER_SIZE));
+        }
+        reader = new Thread(new Runnable(){
+            public void run(){
+                fill();
+            }
+        }, name);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void fill(){
+        try {
+            while(true){
+                ByteBuffer buffer = free.take();
+                byte[] bytes = buffer.array();
+                int n = 0;
+                while(n < bytes.length){
+                    int read = in.read(bytes, n, bytes.length - n);
+                    if(read < 0){
+                        break;
+                    }
+                    n += read;
+                }
+                buffer.clear();
+                buffer.limit(n);
+                if(n > 0){
+                    filled.put(buffer);
+                }
+                if(n < bytes.length){
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            // closed by the consumer
+            return;
+        }
+        try {
+            filled.put(END);
+        } catch (InterruptedException e) {
+            // closed by the consumer
+        }
+    }
+
+    public int read(ByteBuffer dst) throws IOException{
+        if(!open){
+            throw new ClosedChannelException();
+        }
+        while(current == null || !current.hasRemaining()){
+            if(ended){
+                return -1;
+            }
+            if(current != null){
+                free.add(current);
+            }
+            try {
+                current = filled.take();
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted while waiting for input", e);
+            }
+            if(current == END){
+                current = null;
+                ended = true;
+                if(failure != null){
+                    throw failure;
+                }
+            }
+        }
+        int n = Math.min(dst.remaining(), current.remaining());
+        dst.put(current.array(), current.position(), n);
+        current.position(current.position() + n);
+        return n;
+    }
+
+    public boolean isOpen(){
+        return open;
+    }
+
+    public void close() throws IOException{
+        open = false;
+        reader.interrupt();
+        in.close();
+    }
+}
@@ -0,0 +1,151 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free queue between exactly one producer thread and one
+ * consumer thread.<br />
+ * Each side only writes its own counter, so an item costs two volatile
+ * writes and no locks. A side that has to wait parks its thread instead of
+ * spinning, and is unparked by the other side, so no CPU is used while the
+ * ring is full or empty. The producer ends the stream with {@link #close()}.
+ * @param <T> the type of the items handed over
+ */
+public class SliceRing<T> {
+    private final Object[] slots;
+    private final int mask;
+    /** the next slot to read; only written by the consumer */
+    private volatile long head = 0;
+    /** the next slot to write; only written by the producer */
+    private volatile long tail = 0;
+    private volatile boolean closed = false;
+    private volatile Thread waitingConsumer = null;
+    private volatile Thread waitingProducer = null;
+
+    /**
+     * @param capacity the number of items held at most, rounded up to a
+     *        power of two
+     */
+    public SliceRing(int capacity){
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new Object[size];
+        mask = size - 1;
+    }
+
+    /**
+     * hands an item to the consumer, waiting while the ring is full.
+     * Only to be called from the producer thread.
+     * @param item the item to add
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void put(T item) throws InterruptedException{
+        long t = tail;
+        while(t - head == slots.length){
+            waitingProducer = Thread.currentThread();
+            if(t - head == slots.length){
+                LockSupport.park(this);
+            }
+            waitingProducer = null;
+            if(Thread.interrupted()){
+                throw new InterruptedException();
+            }
+        }
+        slots[(int) t & mask] = item;
+        tail = t + 1;
+        Thread consumer = waitingConsumer;
+        if(consumer != null){
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * marks the end of the stream. Only to be called from the producer
+     * thread, after its last {@link #put(Object)}.
+     */
+    public void close(){
+        closed = true;
+        Thread consumer = waitingConsumer;
+        if(consumer != null){
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * removes the next item, waiting until one is available.
+     * Only to be called from the consumer thread.
+     * @return the next item, or null once the stream has ended
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public T take() throws InterruptedException{
+        long h = head;
+        while(h == tail){
+            if(closed && h == tail){
+                return null;
+            }
+            waitingConsumer = Thread.currentThread();
+            if(h == tail && !closed){
+                LockSupport.park(this);
+            }
+            waitingConsumer = null;
+            if(Thread.interrupted()){
+                throw new InterruptedException();
+            }
+        }
+        return remove(h);
+    }
+
+    /**
+     * removes the next item if one is available.
+     * Only to be called from the consumer thread.
+     * @return the next item, or null if the ring is empty
+     */
+    public T poll(){
+        long h = head;
+        if(h == tail){
+            return null;
+        }
+        return remove(h);
+    }
+
+    /**
+     * @return true once the stream has ended and every item was taken
+     */
+    public boolean isFinished(){
+        return closed && head == tail;
+    }
+
+    /**
+     * @return the number of items waiting to be taken
+     */
+    public int size(){
+        return (int) (tail - head);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T remove(long h){
+        int slot = (int) h & mask;
+        T item = (T) slots[slot];
+        slots[slot] = null;
+        head = h + 1;
+        Thread producer = waitingProducer;
+        if(producer != null){
+            LockSupport.unpark(producer);
+        }
+        return item;
+    }
+}
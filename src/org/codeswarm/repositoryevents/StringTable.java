@@ -0,0 +1,164 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dictionary that hands out dense int ids for strings.
+ * Ids start at 0 and are assigned in order of first appearance,
+ * so they can be used directly as array indexes.<br />
+ * The table is safe to share between a loader thread that interns and
+ * a consumer thread that looks ids up.<br />
+ * Besides strings, the table can be searched with UTF-8 bytes through
+ * {@link #internUtf8(byte[], int, int)}, which only decodes a String the
+ * first time a byte sequence is seen.
+ */
+public class StringTable {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+    private final List<String> strings = new ArrayList<String>();
+
+    // open-addressing index from UTF-8 bytes to ids; the keys live in arena
+    private int[] slotIds = newSlots(1024);
+    private int[] slotHashes = new int[1024];
+    private int[] slotOffsets = new int[1024];
+    private int[] slotLengths = new int[1024];
+    private int slotsUsed = 0;
+    private byte[] arena = new byte[1 << 16];
+    private int arenaSize = 0;
+
+    /**
+     * looks up the id of a string, adding it to the table if it is new.
+     * @param s the string to look up (not null)
+     * @return the id of s
+     */
+    public synchronized int intern(String s){
+        Integer id = ids.get(s);
+        if(id == null){
+            id = strings.size();
+            ids.put(s, id);
+            strings.add(s);
+        }
+        return id;
+    }
+
+    /**
+     * looks up the id of a UTF-8 encoded string, adding it to the table if
+     * it is new. Nothing is allocated unless the bytes haven't been seen.
+     * @param bytes the buffer holding the encoded string
+     * @param offset the start of the string in bytes
+     * @param length the length of the string in bytes
+     * @return the id of the decoded string
+     */
+    public synchronized int internUtf8(byte[] bytes, int offset, int length){
+        int hash = 1;
+        for(int i = offset; i < offset + length; i++){
+            hash = 31 * hash + bytes[i];
+        }
+        int mask = slotIds.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while(slotIds[slot] != -1){
+            if(slotHashes[slot] == hash && slotLengths[slot] == length
+                    && equal(bytes, offset, slotOffsets[slot], length)){
+                return slotIds[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = intern(new String(bytes, offset, length, UTF8));
+        if(arenaSize + length > arena.length){
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+        }
+        System.arraycopy(bytes, offset, arena, arenaSize, length);
+        slotIds[slot] = id;
+        slotHashes[slot] = hash;
+        slotOffsets[slot] = arenaSize;
+        slotLengths[slot] = length;
+        arenaSize += length;
+        if(++slotsUsed * 2 > slotIds.length){
+            growSlots();
+        }
+        return id;
+    }
+
+    private boolean equal(byte[] bytes, int offset, int arenaOffset, int length){
+        for(int i = 0; i < length; i++){
+            if(bytes[offset + i] != arena[arenaOffset + i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] newSlots(int size){
+        int[] slots = new int[size];
+        Arrays.fill(slots, -1);
+        return slots;
+    }
+
+    private void growSlots(){
+        int[] oldIds = slotIds, oldHashes = slotHashes, oldOffsets = slotOffsets, oldLengths = slotLengths;
+        int size = oldIds.length * 2;
+        slotIds = newSlots(size);
+        slotHashes = new int[size];
+        slotOffsets = new int[size];
+        slotLengths = new int[size];
+        int mask = size - 1;
+        for(int i = 0; i < oldIds.length; i++){
+            if(oldIds[i] != -1){
+                int slot = (oldHashes[i] ^ (oldHashes[i] >>> 16)) & mask;
+                while(slotIds[slot] != -1){
+                    slot = (slot + 1) & mask;
+                }
+                slotIds[slot] = oldIds[i];
+                slotHashes[slot] = oldHashes[i];
+                slotOffsets[slot] = oldOffsets[i];
+                slotLengths[slot] = oldLengths[i];
+            }
+        }
+    }
+
+    /**
+     * @param s the string to look up
+     * @return the id of s or -1 if it isn't in the table
+     */
+    public synchronized int indexOf(String s){
+        Integer id = ids.get(s);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id an id previously returned by {@link #intern(String)}
+     * @return the string for id
+     */
+    public synchronized String get(int id){
+        return strings.get(id);
+    }
+
+    /**
+     * @return the number of strings in the table
+     */
+    public synchronized int size(){
+        return strings.size();
+    }
+}
@@ -0,0 +1,539 @@
+/* This file is part of code_swarm.
+
+code_swarm is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+code_swarm is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with code_swarm.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.codeswarm.repositoryevents;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A hand-written scanner for the file_events xml dialect:
+ * <pre>
+ * &lt;?xml version="1.0"?&gt;
+ * &lt;file_events&gt;
+ *   &lt;event filename="..." date="..." author="..." /&gt;
+ *   ...
+ * &lt;/file_events&gt;
+ * </pre>
+ * The input is read through one reusable buffer and scanned in a single
+ * pass. Dates are parsed from the digits in place and attribute values
+ * are looked up in the dictionaries as UTF-8 bytes, so a String is only
+ * decoded when a new author or path appears.<br />
+ * Anything outside the dialect (DOCTYPEs, CDATA, named entities, other
+ * encodings, events missing an attribute) raises an
+ * {@link UnsupportedInputException}; callers fall back to a SAX parser
+ * and skip the events that were already returned.
+ */
+public class XMLEventScanner implements EventCursor {
+    private static final int BUFFER_SIZE = 1 << 18;
+    /** returned by the parse methods when the markup continues past the buffer */
+    private static final int NEED_MORE = -1;
+
+    private static final byte[] EVENT = "event".getBytes();
+    private static final byte[] FILENAME = "filename".getBytes();
+    private static final byte[] DATE = "date".getBytes();
+    private static final byte[] AUTHOR = "author".getBytes();
+    private static final byte[] ENCODING = "encoding".getBytes();
+
+    /**
+     * Thrown when the input uses xml features the scanner doesn't handle.
+     */
+    public static class UnsupportedInputException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final long eventsRead;
+
+        UnsupportedInputException(String message, long eventsRead){
+            super(message);
+            this.eventsRead = eventsRead;
+        }
+
+        /**
+         * @return the number of events returned before the problem was found
+         */
+        public long getEventsRead(){
+            return eventsRead;
+        }
+    }
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    /** the buffer's backing array, scanned directly */
+    private final byte[] buf;
+    private final int base;
+    private int limit;
+    private int pos;
+    private boolean eof;
+    private boolean started = false;
+    /** set by parseEvent when a complete event was read */
+    private boolean eventReady;
+    private long eventsRead = 0;
+    /** the number of bytes dropped from the front of buf so far */
+    private long discarded = 0;
+    private long eventOffset;
+
+    private final StringTable authors;
+    private final StringTable paths;
+    private byte[] authorBytes = new byte[64];
+    private int authorLength;
+    private byte[] pathBytes = new byte[256];
+    private int pathLength;
+    private int decodedLength;
+
+    private long date;
+    private int authorId;
+    private int pathId;
+
+    /**
+     * scans a channel.
+     * @param channel the input
+     * @param authors the dictionary to intern authors into
+     * @param paths the dictionary to intern paths into
+     */
+    public XMLEventScanner(ReadableByteChannel channel, StringTable authors, StringTable paths){
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.buf = buffer.array();
+        this.base = 0;
+        this.limit = 0;
+        this.pos = 0;
+        this.eof = false;
+        this.authors = authors;
+        this.paths = paths;
+    }
+
+    /**
+     * scans input that is already in memory.
+     * @param contents the input, between its position and limit; must be backed by an array
+     * @param authors the dictionary to intern authors into
+     * @param paths the dictionary to intern paths into
+     */
+    public XMLEventScanner(ByteBuffer contents, StringTable authors, StringTable paths){
+        this.channel = null;
+        this.buffer = contents;
+        this.buf = contents.array();
+        this.base = contents.arrayOffset() + contents.position();
+        this.limit = contents.arrayOffset() + contents.limit();
+        this.pos = base;
+        this.eof = true;
+        this.authors = authors;
+        this.paths = paths;
+    }
+
+    private UnsupportedInputException unsupported(String message){
+        return new UnsupportedInputException(message, eventsRead);
+    }
+
+    /**
+     * drops the bytes before keep and reads more input after the rest.
+     * @return false if no more input is available
+     */
+    private boolean refill(int keep) throws IOException{
+        if(eof){
+            return false;
+        }
+        int kept = limit - keep;
+        if(kept == buf.length){
+            throw unsupported("Element longer than " + BUFFER_SIZE + " bytes");
+        }
+        System.arraycopy(buf, keep, buf, 0, kept);
+        discarded += keep;
+        pos -= keep;
+        buffer.clear();
+        buffer.position(kept);
+        int n = channel.read(buffer);
+        if(n < 0){
+            eof = true;
+            n = 0;
+        }
+        limit = kept + n;
+        return n > 0;
+    }
+
+    private void checkByteOrderMark() throws IOException{
+        while(limit - pos < 3 && refill(pos)){
+            // too short to tell yet
+        }
+        int b0 = limit - pos > 0 ? buf[pos] & 0xFF : -1;
+        int b1 = limit - pos > 1 ? buf[pos + 1] & 0xFF : -1;
+        if((b0 == 0xFE && b1 == 0xFF) || (b0 == 0xFF && b1 == 0xFE) || b0 == 0){
+            throw unsupported("UTF-16 input");
+        }
+    }
+
+    public boolean next() throws IOException{
+        if(!started){
+            started = true;
+            checkByteOrderMark();
+        }
+        while(true){
+            int lt = pos;
+            while(lt < limit && buf[lt] != '<'){
+                lt++;
+            }
+            if(lt == limit){
+                pos = limit;
+                if(!refill(limit)){
+                    return false;
+                }
+                continue;
+            }
+            eventReady = false;
+            int end = parseMarkup(lt);
+            if(end == NEED_MORE){
+                pos = lt;
+                if(!refill(lt)){
+                    throw unsupported("Unterminated element at end of input");
+                }
+                continue;
+            }
+            pos = end;
+            if(eventReady){
+                eventOffset = discarded + lt - base;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * parses the markup starting at lt.
+     * @return the index after the markup, or NEED_MORE
+     */
+    private int parseMarkup(int lt) throws IOException{
+        int i = lt + 1;
+        if(i >= limit){
+            return NEED_MORE;
+        }
+        byte kind = buf[i];
+        if(kind == '!'){
+            if(i + 2 >= limit){
+                return NEED_MORE;
+            }
+            if(buf[i + 1] != '-' || buf[i + 2] != '-'){
+                throw unsupported("DOCTYPE or CDATA section");
+            }
+            for(int j = i + 3; j + 2 < limit; j++){
+                if(buf[j] == '-' && buf[j + 1] == '-' && buf[j + 2] == '>'){
+                    return j + 3;
+                }
+            }
+            return NEED_MORE;
+        }
+        if(kind == '?'){
+            int end = skipTag(i);
+            if(end != NEED_MORE){
+                checkDeclaration(i + 1, end);
+            }
+            return end;
+        }
+        if(kind != '/' && nameIs(i, EVENT)){
+            return parseEvent(i + EVENT.length);
+        }
+        return skipTag(i);
+    }
+
+    /**
+     * @return the index after the '&gt;' closing the tag, honouring quotes
+     */
+    private int skipTag(int i){
+        byte quote = 0;
+        for(; i < limit; i++){
+            byte b = buf[i];
+            if(quote != 0){
+                if(b == quote){
+                    quote = 0;
+                }
+            } else if(b == '"' || b == '\''){
+                quote = b;
+            } else if(b == '>'){
+                return i + 1;
+            }
+        }
+        return NEED_MORE;
+    }
+
+    /**
+     * @return true if the name starting at i equals name and is followed by
+     *         a delimiter (false if the buffer ends first)
+     */
+    private boolean nameIs(int i, byte[] name){
+        if(i + name.length >= limit){
+            return false;
+        }
+        for(int j = 0; j < name.length; j++){
+            if(buf[i + j] != name[j]){
+                return false;
+            }
+        }
+        byte after = buf[i + name.length];
+        return isSpace(after) || after == '/' || after == '>' || after == '=' || after == '?';
+    }
+
+    private static boolean isSpace(byte b){
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    /**
+     * rejects xml declarations that name an encoding other than UTF-8 or ASCII.
+     */
+    private void checkDeclaration(int i, int end) throws IOException{
+        for(; i < end; i++){
+            if(nameIs(i, ENCODING)){
+                int j = i + ENCODING.length;
+                while(j < end && buf[j] != '"' && buf[j] != '\''){
+                    j++;
+                }
+                int start = ++j;
+                while(j < end && buf[j] != buf[start - 1]){
+                    j++;
+                }
+                String name = new String(buf, start, j - start, "US-ASCII");
+                if(!name.equalsIgnoreCase("UTF-8") && !name.equalsIgnoreCase("UTF8")
+                        && !name.equalsIgnoreCase("US-ASCII") && !name.equalsIgnoreCase("ASCII")){
+                    throw unsupported("Encoding " + name);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * parses the attributes of an event element in one pass.
+     * @return the index after the element, or NEED_MORE
+     */
+    private int parseEvent(int i) throws IOException{
+        boolean hasDate = false;
+        authorLength = -1;
+        pathLength = -1;
+        while(true){
+            while(i < limit && isSpace(buf[i])){
+                i++;
+            }
+            if(i >= limit){
+                return NEED_MORE;
+            }
+            byte b = buf[i];
+            if(b == '/' || b == '>'){
+                break;
+            }
+
+            int nameStart = i;
+            while(i < limit && buf[i] != '=' && !isSpace(buf[i])){
+                i++;
+            }
+            int nameLength = i - nameStart;
+            while(i < limit && isSpace(buf[i])){
+                i++;
+            }
+            if(i >= limit){
+                return NEED_MORE;
+            }
+            if(buf[i] != '='){
+                throw unsupported("Malformed attribute");
+            }
+            i++;
+            while(i < limit && isSpace(buf[i])){
+                i++;
+            }
+            if(i >= limit){
+                return NEED_MORE;
+            }
+            byte quote = buf[i++];
+            if(quote != '"' && quote != '\''){
+                throw unsupported("Unquoted attribute");
+            }
+
+            if(nameLength == DATE.length && nameIs(nameStart, DATE)){
+                i = parseDate(i, quote);
+                hasDate = true;
+            } else if(nameLength == AUTHOR.length && nameIs(nameStart, AUTHOR)){
+                if(authorBytes.length < limit - i){
+                    authorBytes = new byte[Math.max(limit - i, authorBytes.length * 2)];
+                }
+                i = decode(i, quote, authorBytes);
+                authorLength = decodedLength;
+            } else if(nameLength == FILENAME.length && nameIs(nameStart, FILENAME)){
+                if(pathBytes.length < limit - i){
+                    pathBytes = new byte[Math.max(limit - i, pathBytes.length * 2)];
+                }
+                i = decode(i, quote, pathBytes);
+                pathLength = decodedLength;
+            } else {
+                while(i < limit && buf[i] != quote){
+                    i++;
+                }
+                i = i < limit ? i + 1 : NEED_MORE;
+            }
+            if(i == NEED_MORE){
+                return NEED_MORE;
+            }
+        }
+        if(!hasDate || authorLength < 0 || pathLength < 0){
+            throw unsupported("Event without filename, date and author");
+        }
+        int end = skipTag(i);
+        if(end == NEED_MORE){
+            return NEED_MORE;
+        }
+        authorId = authors.internUtf8(authorBytes, 0, authorLength);
+        pathId = paths.internUtf8(pathBytes, 0, pathLength);
+        eventsRead++;
+        eventReady = true;
+        return end;
+    }
+
+    /**
+     * parses the digits of a date attribute into date.
+     * @return the index after the closing quote, or NEED_MORE
+     */
+    private int parseDate(int i, byte quote) throws IOException{
+        boolean negative = i < limit && buf[i] == '-';
+        if(negative){
+            i++;
+        }
+        long value = 0;
+        int digits = 0;
+        for(; i < limit; i++){
+            byte b = buf[i];
+            if(b == quote){
+                if(digits == 0 || digits > 18){
+                    throw unsupported("Unparseable date");
+                }
+                date = negative ? -value : value;
+                return i + 1;
+            }
+            int digit = b - '0';
+            if(digit < 0 || digit > 9){
+                throw unsupported("Unparseable date");
+            }
+            value = value * 10 + digit;
+            digits++;
+        }
+        return NEED_MORE;
+    }
+
+    /**
+     * copies an attribute value into target, resolving character references
+     * and the predefined entities and normalizing whitespace like a SAX
+     * parser. target must hold limit - i bytes; the length is left in
+     * decodedLength.
+     * @return the index after the closing quote, or NEED_MORE
+     */
+    private int decode(int i, byte quote, byte[] target) throws IOException{
+        int n = 0;
+        for(; i < limit; i++){
+            byte b = buf[i];
+            if(b == quote){
+                decodedLength = n;
+                return i + 1;
+            } else if(b == '&'){
+                int semi = i + 1;
+                while(semi < limit && buf[semi] != ';' && buf[semi] != quote){
+                    semi++;
+                }
+                if(semi >= limit){
+                    return NEED_MORE;
+                }
+                if(buf[semi] != ';'){
+                    throw unsupported("Malformed entity");
+                }
+                n = appendUtf8(target, n, entity(i + 1, semi));
+                i = semi;
+            } else if(b == '\r'){
+                if(i + 1 >= limit){
+                    return NEED_MORE;
+                }
+                if(buf[i + 1] == '\n'){
+                    i++;
+                }
+                target[n++] = ' ';
+            } else if(b == '\t' || b == '\n'){
+                target[n++] = ' ';
+            } else if(b == '<'){
+                throw unsupported("'<' in attribute value");
+            } else {
+                target[n++] = b;
+            }
+        }
+        return NEED_MORE;
+    }
+
+    private int entity(int start, int end) throws IOException{
+        if(end - start > 1 && buf[start] == '#'){
+            boolean hex = buf[start + 1] == 'x';
+            int value = 0;
+            for(int i = start + (hex ? 2 : 1); i < end; i++){
+                int digit = Character.digit(buf[i], hex ? 16 : 10);
+                if(digit < 0 || value > 0x10FFFF){
+                    throw unsupported("Malformed character reference");
+                }
+                value = value * (hex ? 16 : 10) + digit;
+            }
+            return value;
+        }
+        String name = new String(buf, start, end - start, "US-ASCII");
+        if(name.equals("amp")) return '&';
+        if(name.equals("lt")) return '<';
+        if(name.equals("gt")) return '>';
+        if(name.equals("quot")) return '"';
+        if(name.equals("apos")) return '\'';
+        throw unsupported("Entity &" + name + ";");
+    }
+
+    /**
+     * @return the new length; a reference is never shorter than its encoding
+     */
+    private static int appendUtf8(byte[] target, int n, int c){
+        if(c < 0x80){
+            target[n++] = (byte)c;
+        } else if(c < 0x800){
+            target[n++] = (byte)(0xC0 | (c >> 6));
+            target[n++] = (byte)(0x80 | (c & 0x3F));
+        } else if(c < 0x10000){
+            target[n++] = (byte)(0xE0 | (c >> 12));
+            target[n++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+            target[n++] = (byte)(0x80 | (c & 0x3F));
+        } else {
+            target[n++] = (byte)(0xF0 | (c >> 18));
+            target[n++] = (byte)(0x80 | ((c >> 12) & 0x3F));
+            target[n++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+            target[n++] = (byte)(0x80 | (c & 0x3F));
+        }
+        return n;
+    }
+
+    /**
+     * @return the byte offset of the current event's start tag, counted
+     *         from the start of the input
+     */
+    public long getEventOffset(){
+        return eventOffset;
+    }
+
+    public long getDate(){
+        return date;
+    }
+    public int getAuthorId(){
+        return authorId;
+    }
+    public int getPathId(){
+        return pathId;
+    }
+    public void close() throws IOException{
+        if(channel != null){
+            channel.close();
+        }
+    }
+}